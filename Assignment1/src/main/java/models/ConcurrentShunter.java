@@ -0,0 +1,156 @@
+package models;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Performs the shunting operations of Train on trains that are shared by multiple threads.
+ * Every operation holds the locks of the trains it involves, which are acquired in the order
+ * of the numbers of their locomotives. Operations on different trains run in parallel,
+ * and operations on the same trains can never wait for each other in a cycle.
+ * Shared trains should only be accessed via a ConcurrentShunter.
+ *
+ * @author HvA HBO-ICT, Irene Doodeman, Kevin Breurken
+ */
+public class ConcurrentShunter {
+    // Taken before the locks of two different trains that can't be ordered by locomotive number or identity.
+    private static final ReentrantLock tieLock = new ReentrantLock();
+
+    /**
+     * Moves one wagon from a train to the rear of another train, see Train.moveOneWagon
+     *
+     * @param fromTrain
+     * @param wagonId
+     * @param toTrain
+     * @return whether the move could be completed successfully
+     */
+    public boolean moveOneWagon(Train fromTrain, int wagonId, Train toTrain) {
+        lockInOrder(fromTrain, toTrain);
+        try {
+            return fromTrain.moveOneWagon(wagonId, toTrain);
+        } finally {
+            unlock(fromTrain, toTrain);
+        }
+    }
+
+    /**
+     * Moves the wagons from a position of a train to the rear of another train, see Train.splitAtPosition
+     *
+     * @param fromTrain
+     * @param position
+     * @param toTrain
+     * @return whether the move could be completed successfully
+     */
+    public boolean splitAtPosition(Train fromTrain, int position, Train toTrain) {
+        lockInOrder(fromTrain, toTrain);
+        try {
+            return fromTrain.splitAtPosition(position, toTrain);
+        } finally {
+            unlock(fromTrain, toTrain);
+        }
+    }
+
+    /**
+     * Reverses the sequence of wagons of a train, see Train.reverse
+     *
+     * @param train
+     */
+    public void reverse(Train train) {
+        train.lock.lock();
+        try {
+            train.reverse();
+        } finally {
+            train.lock.unlock();
+        }
+    }
+
+    /**
+     * Queries a train while no other operation of a ConcurrentShunter can change it.
+     *
+     * @param train
+     * @param query a function that reads the train, e.g. Train::getNumberOfWagons
+     * @return the result of the query
+     */
+    public <T> T inspect(Train train, Function<Train, T> query) {
+        train.lock.lock();
+        try {
+            return query.apply(train);
+        } finally {
+            train.lock.unlock();
+        }
+    }
+
+    /**
+     * Acquires the locks of both trains, the train with the lowest locomotive number first.
+     */
+    private static void lockInOrder(Train train, Train otherTrain) {
+        if (train == otherTrain) {
+            train.lock.lock();
+            return;
+        }
+
+        int order = compare(train, otherTrain);
+        if (order == 0) tieLock.lock();
+
+        Train firstTrain = order <= 0 ? train : otherTrain;
+        Train secondTrain = firstTrain == train ? otherTrain : train;
+        firstTrain.lock.lock();
+        secondTrain.lock.lock();
+    }
+
+    private static void unlock(Train train, Train otherTrain) {
+        train.lock.unlock();
+        if (train == otherTrain) return;
+
+        otherTrain.lock.unlock();
+        if (compare(train, otherTrain) == 0) tieLock.unlock();
+    }
+
+    /**
+     * Acquires the locks of all given trains, in the same order as lockInOrder, so a ShuntingPlan can hold them all at once.
+     *
+     * @param trains the trains to lock, in which a train may occur more than once
+     * @return the distinct trains in the order in which they were locked, to be passed to unlockAll
+     */
+    static List<Train> lockAll(Collection<Train> trains) {
+        Set<Train> distinctTrains = Collections.newSetFromMap(new IdentityHashMap<>());
+        distinctTrains.addAll(trains);
+        List<Train> orderedTrains = new ArrayList<>(distinctTrains);
+        orderedTrains.sort(ConcurrentShunter::compare);
+
+        if (hasTies(orderedTrains)) tieLock.lock();
+        for (Train train : orderedTrains) train.lock.lock();
+        return orderedTrains;
+    }
+
+    /**
+     * @param orderedTrains the trains returned by lockAll
+     */
+    static void unlockAll(List<Train> orderedTrains) {
+        for (int i = orderedTrains.size() - 1; i >= 0; i--) orderedTrains.get(i).lock.unlock();
+        if (hasTies(orderedTrains)) tieLock.unlock();
+    }
+
+    private static boolean hasTies(List<Train> orderedTrains) {
+        for (int i = 1; i < orderedTrains.size(); i++) {
+            if (compare(orderedTrains.get(i - 1), orderedTrains.get(i)) == 0) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Orders trains by the number of their locomotive, and by their identity if the numbers are the same.
+     */
+    private static int compare(Train train, Train otherTrain) {
+        int order = Integer.compare(train.getEngine().getLocNumber(), otherTrain.getEngine().getLocNumber());
+        if (order != 0) return order;
+
+        return Integer.compare(System.identityHashCode(train), System.identityHashCode(otherTrain));
+    }
+}
@@ -0,0 +1,356 @@
+package models;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Assigns a pool of wagons to locomotives, using as few locomotives as it can.
+ * Every resulting train has a single type of wagons, no more wagons than its locomotive can pull
+ * and no more seats (passenger trains) or maximum weight (freight trains) than the targets of the optimizer.
+ * <p>
+ * This is a bin packing problem, which is solved with heuristics on a fork-join pool:
+ * the passenger and freight wagons are packed at the same time, each sorted from the largest to the smallest wagon.
+ * Large pools are divided into interleaved parts, so every part has wagons of all sizes,
+ * which are packed first-fit decreasing in parallel.
+ * Whenever two packed parts are joined, a local search tries to empty the trains that have room left
+ * by moving their wagons into the other trains that have room left.
+ * Finally the trains get a locomotive, the smallest one that can pull all wagons,
+ * a train is split up when no locomotive left can pull all of its wagons.
+ * A wagon with more seats or weight than the target on its own gets a train of its own.
+ *
+ * @author HvA HBO-ICT, Irene Doodeman, Kevin Breurken
+ */
+public class ConsistOptimizer {
+    private static final int PART_SIZE = 4096; // the number of wagons that is packed without dividing them further
+
+    private final int maxSeatsPerTrain;
+    private final int maxWeightPerTrain;
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates an optimizer that runs on the common fork-join pool.
+     *
+     * @param maxSeatsPerTrain  the maximum total number of seats of a passenger train
+     * @param maxWeightPerTrain the maximum total maximum weight of a freight train
+     */
+    public ConsistOptimizer(int maxSeatsPerTrain, int maxWeightPerTrain) {
+        this(maxSeatsPerTrain, maxWeightPerTrain, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param maxSeatsPerTrain  the maximum total number of seats of a passenger train
+     * @param maxWeightPerTrain the maximum total maximum weight of a freight train
+     * @param pool              the pool that runs the optimizer
+     */
+    public ConsistOptimizer(int maxSeatsPerTrain, int maxWeightPerTrain, ForkJoinPool pool) {
+        this.maxSeatsPerTrain = maxSeatsPerTrain;
+        this.maxWeightPerTrain = maxWeightPerTrain;
+        this.pool = pool;
+    }
+
+    /**
+     * Assigns the given wagons to the given locomotives.
+     * The wagons and the locomotives are not changed, the trains are built by applying the result.
+     *
+     * @param wagons       the wagons to assign, each wagon is assigned on its own (its links are ignored)
+     * @param locomotives  the locomotives that are available
+     * @return the wagons assigned to each locomotive used, and the wagons for which there were not enough locomotives
+     */
+    public Result optimize(Collection<? extends Wagon> wagons, Collection<Locomotive> locomotives) {
+        int wagonLimit = 0;
+        for (Locomotive locomotive : locomotives) wagonLimit = Math.max(wagonLimit, locomotive.getMaxWagons());
+
+        List<Wagon> passengerWagons = new ArrayList<>();
+        List<Wagon> freightWagons = new ArrayList<>();
+        List<Wagon> unassigned = new ArrayList<>();
+        for (Wagon wagon : wagons) {
+            if (wagon instanceof PassengerWagon) passengerWagons.add(wagon);
+            else if (wagon instanceof FreightWagon) freightWagons.add(wagon);
+            else unassigned.add(wagon);
+        }
+
+        if (wagonLimit == 0) {
+            unassigned.addAll(passengerWagons);
+            unassigned.addAll(freightWagons);
+            return new Result(List.of(), unassigned);
+        }
+
+        PackTask passengerTask = PackTask.of(passengerWagons, maxSeatsPerTrain, wagonLimit);
+        PackTask freightTask = PackTask.of(freightWagons, maxWeightPerTrain, wagonLimit);
+        pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(passengerTask, freightTask)));
+
+        List<Bin> bins = new ArrayList<>(passengerTask.join());
+        bins.addAll(freightTask.join());
+
+        return assignLocomotives(bins, locomotives, unassigned);
+    }
+
+    /**
+     * Gives every train the smallest locomotive that can pull all of its wagons, starting with the longest train.
+     */
+    private static Result assignLocomotives(List<Bin> bins, Collection<Locomotive> locomotives, List<Wagon> unassigned) {
+        TreeMap<Integer, Deque<Locomotive>> available = new TreeMap<>();
+        for (Locomotive locomotive : locomotives)
+            available.computeIfAbsent(locomotive.getMaxWagons(), m -> new ArrayDeque<>()).add(locomotive);
+
+        bins.sort(Comparator.comparingInt((Bin bin) -> bin.wagons.size()).reversed());
+
+        List<Assignment> assignments = new ArrayList<>();
+        for (Bin bin : bins) {
+            List<Wagon> wagons = bin.wagons;
+
+            while (!wagons.isEmpty()) {
+                Map.Entry<Integer, Deque<Locomotive>> fitting = available.ceilingEntry(wagons.size());
+                if (fitting == null) fitting = available.lastEntry(); // The train is split up.
+                if (fitting == null) {
+                    unassigned.addAll(wagons);
+                    break;
+                }
+
+                Locomotive locomotive = fitting.getValue().poll();
+                if (fitting.getValue().isEmpty()) available.remove(fitting.getKey());
+
+                int numberOfWagons = Math.min(wagons.size(), locomotive.getMaxWagons());
+                assignments.add(new Assignment(locomotive, new ArrayList<>(wagons.subList(0, numberOfWagons))));
+                wagons = wagons.subList(numberOfWagons, wagons.size());
+            }
+        }
+
+        return new Result(assignments, unassigned);
+    }
+
+    private static int capacityOf(Wagon wagon) {
+        return wagon instanceof PassengerWagon ? ((PassengerWagon) wagon).getNumberOfSeats() : ((FreightWagon) wagon).getMaxWeight();
+    }
+
+    /**
+     * Packs a part of the wagons of a single type into bins.
+     * The part is every step-th wagon of the sorted wagons, starting at the given index.
+     */
+    private static class PackTask extends RecursiveTask<List<Bin>> {
+        private static final long serialVersionUID = 1L;
+
+        private final Wagon[] wagons;
+        private final int[] capacities;
+        private final int start;
+        private final int step;
+        private final int numberOfWagons;
+        private final long target;
+        private final int wagonLimit;
+
+        private PackTask(Wagon[] wagons, int[] capacities, int start, int step, int numberOfWagons, long target, int wagonLimit) {
+            this.wagons = wagons;
+            this.capacities = capacities;
+            this.start = start;
+            this.step = step;
+            this.numberOfWagons = numberOfWagons;
+            this.target = target;
+            this.wagonLimit = wagonLimit;
+        }
+
+        /**
+         * @return a task that packs all given wagons
+         */
+        private static PackTask of(List<Wagon> wagons, long target, int wagonLimit) {
+            Wagon[] sorted = wagons.toArray(new Wagon[0]);
+            Arrays.sort(sorted, Comparator.comparingInt(ConsistOptimizer::capacityOf).reversed());
+
+            int[] capacities = new int[sorted.length];
+            for (int i = 0; i < sorted.length; i++) capacities[i] = capacityOf(sorted[i]);
+
+            return new PackTask(sorted, capacities, 0, 1, sorted.length, target, wagonLimit);
+        }
+
+        @Override
+        protected List<Bin> compute() {
+            if (numberOfWagons <= PART_SIZE) return improve(firstFitDecreasing());
+
+            // Both halves take every other wagon, so each gets wagons of all sizes.
+            PackTask even = new PackTask(wagons, capacities, start, 2 * step, (numberOfWagons + 1) / 2, target, wagonLimit);
+            PackTask odd = new PackTask(wagons, capacities, start + step, 2 * step, numberOfWagons / 2, target, wagonLimit);
+            odd.fork();
+            List<Bin> bins = even.compute();
+            bins.addAll(odd.join());
+
+            return improve(bins);
+        }
+
+        private List<Bin> firstFitDecreasing() {
+            List<Bin> bins = new ArrayList<>();
+            List<Bin> open = new ArrayList<>();   // the bins that can take another wagon
+
+            for (int i = 0, index = start; i < numberOfWagons; i++, index += step) {
+                Bin fitting = null;
+                for (Bin bin : open) {
+                    if (bin.value + capacities[index] <= target) {
+                        fitting = bin;
+                        break;
+                    }
+                }
+                if (fitting == null) {
+                    fitting = new Bin();
+                    bins.add(fitting);
+                    open.add(fitting);
+                }
+
+                fitting.add(wagons[index], capacities[index]);
+                if (fitting.wagons.size() == wagonLimit || fitting.value >= target) open.remove(fitting);
+            }
+
+            return bins;
+        }
+
+        /**
+         * Tries to empty the bins that have room left, starting with the emptiest one,
+         * by moving all of their wagons into the other bins that have room left.
+         *
+         * @return the bins that are not empty
+         */
+        private List<Bin> improve(List<Bin> bins) {
+            List<Bin> open = new ArrayList<>();
+            for (Bin bin : bins) {
+                if (bin.wagons.size() < wagonLimit && bin.value < target) open.add(bin);
+            }
+            open.sort(Comparator.comparingInt((Bin bin) -> bin.wagons.size()).thenComparingLong(bin -> bin.value));
+
+            int[] extraWagons = new int[open.size()];
+            long[] extraValue = new long[open.size()];
+            int[] destinations = new int[wagonLimit];
+
+            for (int i = 0; i < open.size(); i++) {
+                Bin bin = open.get(i);
+                if (bin.wagons.isEmpty()) continue;
+
+                // Looks for a place for every wagon of the bin, trying the fullest bins first.
+                Arrays.fill(extraWagons, 0);
+                Arrays.fill(extraValue, 0);
+                boolean placed = true;
+                for (int w = 0; w < bin.wagons.size() && placed; w++) {
+                    placed = false;
+                    for (int j = open.size() - 1; j >= 0; j--) {
+                        Bin other = open.get(j);
+                        if (j == i || other.wagons.isEmpty()) continue;
+
+                        if (other.wagons.size() + extraWagons[j] < wagonLimit
+                                && other.value + extraValue[j] + bin.capacities[w] <= target) {
+                            extraWagons[j]++;
+                            extraValue[j] += bin.capacities[w];
+                            destinations[w] = j;
+                            placed = true;
+                            break;
+                        }
+                    }
+                }
+                if (!placed) continue;
+
+                for (int w = 0; w < bin.wagons.size(); w++)
+                    open.get(destinations[w]).add(bin.wagons.get(w), bin.capacities[w]);
+                bin.clear();
+            }
+
+            bins.removeIf(bin -> bin.wagons.isEmpty());
+            return bins;
+        }
+    }
+
+    /**
+     * The wagons packed together for a single train.
+     */
+    private static class Bin {
+        private final List<Wagon> wagons = new ArrayList<>();
+        private int[] capacities = new int[4];  // the capacity of each wagon, in the order of the wagons
+        private long value;
+
+        private void add(Wagon wagon, int capacity) {
+            if (wagons.size() == capacities.length) capacities = Arrays.copyOf(capacities, 2 * capacities.length);
+
+            capacities[wagons.size()] = capacity;
+            wagons.add(wagon);
+            value += capacity;
+        }
+
+        private void clear() {
+            wagons.clear();
+            value = 0;
+        }
+    }
+
+    /**
+     * The wagons assigned to a locomotive.
+     */
+    public static class Assignment {
+        private final Locomotive locomotive;
+        private final List<Wagon> wagons;
+
+        private Assignment(Locomotive locomotive, List<Wagon> wagons) {
+            this.locomotive = locomotive;
+            this.wagons = Collections.unmodifiableList(wagons);
+        }
+
+        public Locomotive getLocomotive() {
+            return locomotive;
+        }
+
+        public List<Wagon> getWagons() {
+            return wagons;
+        }
+
+        /**
+         * Builds the train of this assignment.
+         *
+         * @param origin
+         * @param destination
+         * @return a train pulled by the locomotive, with the assigned wagons attached in order
+         * @throws IllegalStateException when the wagons cannot be attached, i.e. when a wagon is part of a train already
+         */
+        public Train toTrain(String origin, String destination) {
+            Train train = new Train(locomotive, origin, destination);
+            if (!train.attachAll(wagons))
+                throw new IllegalStateException("The wagons assigned to " + locomotive + " cannot be attached to it");
+
+            return train;
+        }
+    }
+
+    /**
+     * The result of an optimization.
+     */
+    public static class Result {
+        private final List<Assignment> assignments;
+        private final List<Wagon> unassignedWagons;
+
+        private Result(List<Assignment> assignments, List<Wagon> unassignedWagons) {
+            this.assignments = Collections.unmodifiableList(assignments);
+            this.unassignedWagons = Collections.unmodifiableList(unassignedWagons);
+        }
+
+        /**
+         * @return the wagons assigned to each locomotive that is used
+         */
+        public List<Assignment> getAssignments() {
+            return assignments;
+        }
+
+        /**
+         * @return the wagons for which no locomotive was left
+         */
+        public List<Wagon> getUnassignedWagons() {
+            return unassignedWagons;
+        }
+
+        public int getNumberOfLocomotives() {
+            return assignments.size();
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package models;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * An immutable view of the wagons of a train at one moment, which any number of threads can read without locking.
+ * A train publishes a new snapshot after every operation that changes its wagons.
+ * The wagons are kept in a persistent balanced tree (an implicit treap), of which every change copies
+ * only the path to the changed wagons and shares all other nodes with the previous snapshot,
+ * so publishing a snapshot takes the same order of time as the change of the train itself.
+ * A reversed snapshot shares the whole tree, by marking its root as reversed.
+ *
+ * @author HvA HBO-ICT, Irene Doodeman, Kevin Breurken
+ */
+public final class ConsistSnapshot implements Iterable<Wagon> {
+    static final ConsistSnapshot EMPTY = new ConsistSnapshot(null);
+
+    private final Node root;
+
+    private ConsistSnapshot(Node root) {
+        this.root = root;
+    }
+
+    public int getNumberOfWagons() {
+        return sizeOf(root);
+    }
+
+    public boolean hasWagons() {
+        return root != null;
+    }
+
+    /**
+     * @return the total number of seats of the passenger wagons in the snapshot
+     */
+    public int getTotalNumberOfSeats() {
+        return root == null ? 0 : root.seats;
+    }
+
+    /**
+     * @return the total maximum weight of the freight wagons in the snapshot
+     */
+    public int getTotalMaxWeight() {
+        return root == null ? 0 : root.maxWeight;
+    }
+
+    /**
+     * Finds the wagon at the given position (starting at 1 for the first wagon of the train)
+     *
+     * @param position
+     * @return the wagon found at the given position
+     * (return null if the position is not valid for this snapshot)
+     */
+    public Wagon findWagonAtPosition(int position) {
+        if (position < 1 || position > getNumberOfWagons()) return null;
+
+        int index = position - 1;
+        boolean reversed = false;
+        Node node = root;
+        while (true) {
+            // The children of a node are swapped when an odd number of nodes on the path is reversed.
+            reversed ^= node.reversed;
+            Node front = reversed ? node.right : node.left;
+            int frontSize = sizeOf(front);
+
+            if (index < frontSize) node = front;
+            else if (index == frontSize) return node.wagon;
+            else {
+                index -= frontSize + 1;
+                node = reversed ? node.left : node.right;
+            }
+        }
+    }
+
+    /**
+     * @return the wagons from the front to the rear of the train
+     */
+    @Override
+    public Iterator<Wagon> iterator() {
+        return new Iterator<>() {
+            // The nodes still to visit, with whether they are seen as reversed.
+            private final ArrayDeque<Node> nodes = new ArrayDeque<>();
+            private final ArrayDeque<Boolean> reversed = new ArrayDeque<>();
+
+            {
+                pushFront(root, false);
+            }
+
+            private void pushFront(Node node, boolean parentReversed) {
+                while (node != null) {
+                    boolean nodeReversed = parentReversed ^ node.reversed;
+                    nodes.push(node);
+                    reversed.push(nodeReversed);
+
+                    parentReversed = nodeReversed;
+                    node = nodeReversed ? node.right : node.left;
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return !nodes.isEmpty();
+            }
+
+            @Override
+            public Wagon next() {
+                if (nodes.isEmpty()) throw new NoSuchElementException();
+
+                Node node = nodes.pop();
+                boolean nodeReversed = reversed.pop();
+                pushFront(nodeReversed ? node.left : node.right, nodeReversed);
+
+                return node.wagon;
+            }
+        };
+    }
+
+    /**
+     * @param position       the number of wagons in front of the inserted sequence
+     * @param wagon          the first wagon of the sequence to insert
+     * @param numberOfWagons the number of wagons of the sequence, following the next wagons
+     * @return a snapshot with the sequence inserted
+     */
+    ConsistSnapshot insert(int position, Wagon wagon, int numberOfWagons) {
+        Node[] parts = split(root, position);
+        return new ConsistSnapshot(merge(merge(parts[0], build(wagon, numberOfWagons)), parts[1]));
+    }
+
+    /**
+     * @param position       the position of the first wagon to remove (starting at 1)
+     * @param numberOfWagons the number of wagons to remove
+     * @return a snapshot without the removed wagons
+     */
+    ConsistSnapshot remove(int position, int numberOfWagons) {
+        Node[] front = split(root, position - 1);
+        Node[] rest = split(front[1], numberOfWagons);
+        return new ConsistSnapshot(merge(front[0], rest[1]));
+    }
+
+    /**
+     * @param numberOfWagons the number of wagons at the front
+     * @return a snapshot of the given number of wagons at the front, and a snapshot of the wagons behind them
+     */
+    ConsistSnapshot[] split(int numberOfWagons) {
+        Node[] parts = split(root, numberOfWagons);
+        return new ConsistSnapshot[]{new ConsistSnapshot(parts[0]), new ConsistSnapshot(parts[1])};
+    }
+
+    /**
+     * @param rear
+     * @return a snapshot with the wagons of the given snapshot behind the wagons of this one
+     */
+    ConsistSnapshot append(ConsistSnapshot rear) {
+        return new ConsistSnapshot(merge(root, rear.root));
+    }
+
+    /**
+     * @return a snapshot with the wagons in reverse order
+     */
+    ConsistSnapshot reverse() {
+        return root == null ? this : new ConsistSnapshot(root.flipped());
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Wagon wagon : this) sb.append(wagon);
+        return sb.toString();
+    }
+
+    /**
+     * Builds a tree from a sequence of wagons in a single pass, in the same way as WagonTree.
+     * The tree is built on indexes first, since the nodes can't be changed once they are made.
+     */
+    private static Node build(Wagon wagon, int numberOfWagons) {
+        Wagon[] wagons = new Wagon[numberOfWagons];
+        int[] priorities = new int[numberOfWagons];
+        int[] fronts = new int[numberOfWagons];
+        int[] rears = new int[numberOfWagons];
+        int[] rightMostPath = new int[numberOfWagons];
+        int pathLength = 0;
+
+        for (int i = 0; i < numberOfWagons; i++, wagon = wagon.getNextWagon()) {
+            wagons[i] = wagon;
+            priorities[i] = ThreadLocalRandom.current().nextInt();
+            rears[i] = -1;
+
+            // Wagons with a lower priority end up in front of the current wagon.
+            int subtree = -1;
+            while (pathLength > 0 && priorities[rightMostPath[pathLength - 1]] < priorities[i])
+                subtree = rightMostPath[--pathLength];
+
+            fronts[i] = subtree;
+            if (pathLength > 0) rears[rightMostPath[pathLength - 1]] = i;
+            rightMostPath[pathLength++] = i;
+        }
+
+        return pathLength == 0 ? null : toNode(rightMostPath[0], wagons, priorities, fronts, rears);
+    }
+
+    private static Node toNode(int index, Wagon[] wagons, int[] priorities, int[] fronts, int[] rears) {
+        if (index < 0) return null;
+
+        return new Node(wagons[index], toNode(fronts[index], wagons, priorities, fronts, rears),
+                toNode(rears[index], wagons, priorities, fronts, rears), priorities[index], false);
+    }
+
+    /**
+     * Splits a tree into the given number of wagons at the front and all wagons behind them.
+     *
+     * @return an array with the root of the front part and the root of the rear part
+     */
+    private static Node[] split(Node node, int numberOfWagons) {
+        if (node == null) return new Node[]{null, null};
+
+        node = node.normalized();
+        Node[] parts;
+        if (sizeOf(node.left) >= numberOfWagons) {
+            parts = split(node.left, numberOfWagons);
+            parts[1] = node.with(parts[1], node.right);
+        } else {
+            parts = split(node.right, numberOfWagons - sizeOf(node.left) - 1);
+            parts[0] = node.with(node.left, parts[0]);
+        }
+
+        return parts;
+    }
+
+    /**
+     * Merges two trees, placing all wagons of the rear tree behind the wagons of the front tree.
+     *
+     * @return the root of the merged tree
+     */
+    private static Node merge(Node front, Node rear) {
+        if (front == null) return rear;
+        if (rear == null) return front;
+
+        if (front.priority > rear.priority) {
+            front = front.normalized();
+            return front.with(front.left, merge(front.right, rear));
+        } else {
+            rear = rear.normalized();
+            return rear.with(merge(front, rear.left), rear.right);
+        }
+    }
+
+    private static int sizeOf(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    /**
+     * A node of the tree, with the size and the totals of its subtree.
+     * The wagons of a reversed subtree are in the reverse order of its left subtree, its wagon and its right subtree.
+     */
+    private static final class Node {
+        private final Wagon wagon;
+        private final Node left;
+        private final Node right;
+        private final int priority;
+        private final boolean reversed;
+        private final int size;
+        private final int seats;
+        private final int maxWeight;
+
+        private Node(Wagon wagon, Node left, Node right, int priority, boolean reversed) {
+            this.wagon = wagon;
+            this.left = left;
+            this.right = right;
+            this.priority = priority;
+            this.reversed = reversed;
+            this.size = 1 + sizeOf(left) + sizeOf(right);
+
+            int seats = wagon instanceof PassengerWagon ? ((PassengerWagon) wagon).getNumberOfSeats() : 0;
+            int maxWeight = wagon instanceof FreightWagon ? ((FreightWagon) wagon).getMaxWeight() : 0;
+            if (left != null) {
+                seats += left.seats;
+                maxWeight += left.maxWeight;
+            }
+            if (right != null) {
+                seats += right.seats;
+                maxWeight += right.maxWeight;
+            }
+            this.seats = seats;
+            this.maxWeight = maxWeight;
+        }
+
+        /**
+         * @return a copy of this node with different subtrees (only for a node that isn't reversed)
+         */
+        private Node with(Node left, Node right) {
+            return new Node(wagon, left, right, priority, false);
+        }
+
+        /**
+         * @return a copy of this node with its subtree reversed
+         */
+        private Node flipped() {
+            return new Node(wagon, left, right, priority, !reversed);
+        }
+
+        /**
+         * @return this node if it isn't reversed, otherwise a copy that holds the same wagons in the same order
+         * by swapping and reversing its subtrees
+         */
+        private Node normalized() {
+            if (!reversed) return this;
+
+            return new Node(wagon, right == null ? null : right.flipped(), left == null ? null : left.flipped(), priority, false);
+        }
+    }
+}
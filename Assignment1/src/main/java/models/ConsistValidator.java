@@ -0,0 +1,70 @@
+package models;
+
+/**
+ * Verifies the representation invariants of a train in a single walk along its wagons, without allocating anything,
+ * so it can be run after every batch of operations, also on trains of a million wagons.
+ * The walk checks that every wagon links back to the wagon in front of it and is owned and indexed by the train,
+ * that all wagons have the same type, and that the number of wagons, the last wagon and the totals of the train
+ * match its sequence, which the locomotive can pull.
+ * The walk never takes more steps than the train has wagons, so a cycle ends it instead of trapping it.
+ *
+ * @author HvA HBO-ICT, Irene Doodeman, Kevin Breurken
+ */
+public final class ConsistValidator {
+    public enum Violation {
+        BROKEN_LINK, FOREIGN_WAGON, NOT_INDEXED, MIXED_TYPES, WRONG_NUMBER_OF_WAGONS, WRONG_LAST_WAGON, WRONG_TOTALS, OVER_CAPACITY
+    }
+
+    private ConsistValidator() {
+    }
+
+    /**
+     * @param train
+     * @return the first broken invariant found, or null if the train is valid
+     */
+    public static Violation findViolation(Train train) {
+        Wagon firstWagon = train.getFirstWagon();
+        int numberOfWagons = train.getNumberOfWagons();
+        boolean passenger = firstWagon instanceof PassengerWagon;
+
+        int count = 0;
+        long capacity = 0;
+        Wagon previous = null;
+        for (Wagon wagon = firstWagon; wagon != null; wagon = wagon.getNextWagon()) {
+            // A sequence that is longer than the count of the train may run in a cycle.
+            if (count == numberOfWagons) return Violation.WRONG_NUMBER_OF_WAGONS;
+
+            if (wagon.getPreviousWagon() != previous) return Violation.BROKEN_LINK;
+            if (wagon.getTrain() != train) return Violation.FOREIGN_WAGON;
+            if (train.findWagonById(wagon.getId()) != wagon) return Violation.NOT_INDEXED;
+            if ((wagon instanceof PassengerWagon) != passenger) return Violation.MIXED_TYPES;
+
+            if (passenger) capacity += ((PassengerWagon) wagon).getNumberOfSeats();
+            else if (wagon instanceof FreightWagon) capacity += ((FreightWagon) wagon).getMaxWeight();
+            previous = wagon;
+            count++;
+        }
+
+        if (count != numberOfWagons) return Violation.WRONG_NUMBER_OF_WAGONS;
+        if (previous != train.getLastWagonAttached()) return Violation.WRONG_LAST_WAGON;
+        if (capacity != train.getCapacity()) return Violation.WRONG_TOTALS;
+        if (count > train.getEngine().getMaxWagons()) return Violation.OVER_CAPACITY;
+
+        return null;
+    }
+
+    public static boolean isValid(Train train) {
+        return findViolation(train) == null;
+    }
+
+    /**
+     * Verifies the train, which only allocates a message when it is not valid.
+     *
+     * @param train
+     * @throws IllegalStateException if an invariant of the train is broken
+     */
+    public static void validate(Train train) {
+        Violation violation = findViolation(train);
+        if (violation != null) throw new IllegalStateException(train.getEngine() + " is not valid: " + violation);
+    }
+}
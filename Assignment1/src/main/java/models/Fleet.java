@@ -0,0 +1,254 @@
+package models;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A registry of trains that can be queried by origin, destination, type and capacity without visiting every train.
+ * The trains are indexed per route (origin and destination) and type, in buckets of capacities that double in size:
+ * the number of seats for passenger trains and the total maximum weight for freight trains.
+ * A query visits the routes that match, takes the buckets above the requested capacity as a whole
+ * and only checks the trains of the bucket the requested capacity falls into.
+ * A train tells its fleet whenever its wagons change, so the index follows the wagons that move between trains.
+ * A fleet guards its index with a lock of its own, as trains that are locked separately by a ConcurrentShunter
+ * may update the same routes at the same time. Every query sees the index between two updates,
+ * with the capacity of each train as it was after its last change.
+ * A train should be added to a fleet before it is shared.
+ *
+ * @author HvA HBO-ICT, Irene Doodeman, Kevin Breurken
+ */
+public class Fleet {
+    private final Map<Train, Entry> entries = new IdentityHashMap<>();
+    private final Map<String, Map<String, Route>> routesByOrigin = new HashMap<>();
+    private final Map<String, List<Route>> routesByDestination = new HashMap<>();
+    private final List<Route> routes = new ArrayList<>();
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Adds a train to the fleet.
+     *
+     * @param train a train that isn't part of another fleet
+     */
+    public void add(Train train) {
+        lock.lock();
+        try {
+            if (train.fleet == this) return;
+            if (train.fleet != null)
+                throw new IllegalStateException(train + " is already part of another fleet");
+
+            Entry entry = new Entry(train, routeOf(train.getOrigin(), train.getDestination()));
+            entries.put(train, entry);
+            train.fleet = this;
+            update(train, train.getFirstWagon());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes a train from the fleet.
+     *
+     * @param train
+     * @return whether the train was part of this fleet
+     */
+    public boolean remove(Train train) {
+        lock.lock();
+        try {
+            Entry entry = entries.remove(train);
+            if (entry == null) return false;
+
+            if (entry.index != null) entry.index.remove(entry);
+            train.fleet = null;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getNumberOfTrains() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Finds the passenger trains of a route with at least the given number of seats.
+     *
+     * @param origin        the origin of the trains, or null for any origin
+     * @param destination   the destination of the trains, or null for any destination
+     * @param minimumSeats
+     * @return the trains found, in no particular order
+     */
+    public List<Train> findPassengerTrains(String origin, String destination, int minimumSeats) {
+        return find(origin, destination, true, minimumSeats);
+    }
+
+    /**
+     * Finds the freight trains of a route with at least the given total maximum weight.
+     *
+     * @param origin           the origin of the trains, or null for any origin
+     * @param destination      the destination of the trains, or null for any destination
+     * @param minimumMaxWeight
+     * @return the trains found, in no particular order
+     */
+    public List<Train> findFreightTrains(String origin, String destination, int minimumMaxWeight) {
+        return find(origin, destination, false, minimumMaxWeight);
+    }
+
+    private List<Train> find(String origin, String destination, boolean passenger, int minimumCapacity) {
+        List<Train> found = new ArrayList<>();
+
+        lock.lock();
+        try {
+            for (Route route : routesMatching(origin, destination)) {
+                CapacityIndex index = passenger ? route.passengerTrains : route.freightTrains;
+                index.find(minimumCapacity, found);
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        return found;
+    }
+
+    private List<Route> routesMatching(String origin, String destination) {
+        if (origin == null && destination == null) return routes;
+        if (origin == null) return routesByDestination.getOrDefault(destination, List.of());
+
+        Map<String, Route> routesFromOrigin = routesByOrigin.getOrDefault(origin, Map.of());
+        if (destination != null) {
+            Route route = routesFromOrigin.get(destination);
+            return route == null ? List.of() : List.of(route);
+        }
+        return new ArrayList<>(routesFromOrigin.values());
+    }
+
+    /**
+     * @return the route of the given origin and destination, which is created the first time it is asked for
+     */
+    private Route routeOf(String origin, String destination) {
+        // HashMap allows a missing origin or destination as a key.
+        Map<String, Route> routesFromOrigin = routesByOrigin.computeIfAbsent(origin, o -> new HashMap<>());
+        Route route = routesFromOrigin.get(destination);
+
+        if (route == null) {
+            route = new Route();
+            routesFromOrigin.put(destination, route);
+            routesByDestination.computeIfAbsent(destination, d -> new ArrayList<>()).add(route);
+            routes.add(route);
+        }
+
+        return route;
+    }
+
+    /**
+     * Moves the given train to the index and bucket that match its current type and capacity.
+     * Called by a train of this fleet whenever its wagons change, while the train can't be changed by other threads.
+     *
+     * @param train a train of this fleet
+     * @param wagon any wagon of the train, which tells the type of the train, or null if the train has no wagons
+     */
+    void update(Train train, Wagon wagon) {
+        lock.lock();
+        try {
+            // The train may have been removed from this fleet by another thread.
+            Entry entry = entries.get(train);
+            if (entry == null) return;
+
+            CapacityIndex index = wagon instanceof PassengerWagon ? entry.route.passengerTrains
+                    : wagon instanceof FreightWagon ? entry.route.freightTrains : null;
+            // The capacity is read under the lock, so a later update of the train can't be overtaken by an earlier one.
+            entry.capacity = train.getCapacity();
+
+            int bucket = CapacityIndex.bucketOf(entry.capacity);
+            if (index == entry.index && bucket == entry.bucket) return;
+
+            if (entry.index != null) entry.index.remove(entry);
+            if (index != null) index.add(entry, bucket);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The trains of a single origin and destination.
+     */
+    private static class Route {
+        private final CapacityIndex passengerTrains = new CapacityIndex();
+        private final CapacityIndex freightTrains = new CapacityIndex();
+    }
+
+    /**
+     * Trains of a single route and type, in buckets by their capacity.
+     * Bucket 0 holds the trains without capacity and bucket b the capacities from 2^(b-1) up to (not including) 2^b.
+     */
+    private static class CapacityIndex {
+        private final List<List<Entry>> buckets = new ArrayList<>(Collections.nCopies(Integer.SIZE + 1, null));
+
+        private static int bucketOf(int capacity) {
+            return capacity <= 0 ? 0 : Integer.SIZE - Integer.numberOfLeadingZeros(capacity);
+        }
+
+        private void add(Entry entry, int bucket) {
+            if (buckets.get(bucket) == null) buckets.set(bucket, new ArrayList<>());
+
+            entry.index = this;
+            entry.bucket = bucket;
+            entry.slot = buckets.get(bucket).size();
+            buckets.get(bucket).add(entry);
+        }
+
+        private void remove(Entry entry) {
+            // Moves the last entry of the bucket into the slot of the removed entry.
+            List<Entry> bucket = buckets.get(entry.bucket);
+            Entry last = bucket.remove(bucket.size() - 1);
+            if (last != entry) {
+                bucket.set(entry.slot, last);
+                last.slot = entry.slot;
+            }
+
+            entry.index = null;
+            entry.bucket = -1;
+        }
+
+        private void find(int minimumCapacity, List<Train> found) {
+            int lowestBucket = bucketOf(minimumCapacity);
+
+            // Only the lowest bucket holds trains with less than the minimum capacity.
+            if (buckets.get(lowestBucket) != null) {
+                for (Entry entry : buckets.get(lowestBucket)) {
+                    if (entry.capacity >= minimumCapacity) found.add(entry.train);
+                }
+            }
+            for (int bucket = lowestBucket + 1; bucket < buckets.size(); bucket++) {
+                if (buckets.get(bucket) == null) continue;
+                for (Entry entry : buckets.get(bucket)) found.add(entry.train);
+            }
+        }
+    }
+
+    /**
+     * Where a train of the fleet is kept in the index.
+     */
+    private static class Entry {
+        private final Train train;
+        private final Route route;
+        private CapacityIndex index;    // null while the train has no wagons
+        private int bucket = -1;
+        private int slot;
+        private int capacity;
+
+        private Entry(Train train, Route route) {
+            this.train = train;
+            this.route = route;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package models;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Stores a fleet of trains in a compact binary file, and loads it again by mapping the file into memory.
+ * The trains are built directly from the wagons in the file, without checking every wagon the way attachToRear does,
+ * so loading a fleet mostly comes down to reading the file.
+ * <p>
+ * The file starts with the magic number and the version of the format, followed by the number of trains.
+ * Every train is stored as the number and capacity of its locomotive, its origin and destination
+ * (each as a length followed by UTF-8 bytes, or a negative length if it is missing),
+ * its number of wagons and then every wagon as a type, an id and a capacity
+ * (the number of seats of a passenger wagon or the maximum weight of a freight wagon).
+ * All numbers are stored big-endian.
+ *
+ * @author HvA HBO-ICT, Irene Doodeman, Kevin Breurken
+ */
+public class FleetFile {
+    static final int MAGIC = 0x48564146; // "HVAF"
+    static final short VERSION = 1;
+
+    private static final byte PASSENGER_WAGON = 1;
+    private static final byte FREIGHT_WAGON = 2;
+
+    // The smallest number of bytes of a stored train (without any origin, destination or wagons) and of a stored wagon.
+    private static final int TRAIN_BYTES = 5 * Integer.BYTES;
+    private static final int WAGON_BYTES = 1 + 2 * Integer.BYTES;
+
+    private FleetFile() {
+    }
+
+    /**
+     * Writes the given trains to a file, replacing the file if it exists.
+     *
+     * @param file
+     * @param trains
+     * @throws IOException when the file cannot be written
+     */
+    public static void write(Path file, Collection<Train> trains) throws IOException {
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+            output.writeInt(MAGIC);
+            output.writeShort(VERSION);
+            output.writeInt(trains.size());
+
+            for (Train train : trains) {
+                output.writeInt(train.getEngine().getLocNumber());
+                output.writeInt(train.getEngine().getMaxWagons());
+                writeString(output, train.getOrigin());
+                writeString(output, train.getDestination());
+                output.writeInt(train.getNumberOfWagons());
+
+                for (Wagon wagon = train.getFirstWagon(); wagon != null; wagon = wagon.getNextWagon()) {
+                    if (wagon instanceof PassengerWagon) {
+                        output.writeByte(PASSENGER_WAGON);
+                        output.writeInt(wagon.getId());
+                        output.writeInt(((PassengerWagon) wagon).getNumberOfSeats());
+                    } else if (wagon instanceof FreightWagon) {
+                        output.writeByte(FREIGHT_WAGON);
+                        output.writeInt(wagon.getId());
+                        output.writeInt(((FreightWagon) wagon).getMaxWeight());
+                    } else {
+                        throw new IllegalArgumentException(wagon + " is neither a passenger wagon nor a freight wagon");
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Loads the trains from a file that has been written by write.
+     *
+     * @param file
+     * @return the trains, in the order in which they were written
+     * @throws IOException when the file cannot be read or isn't a fleet file of a supported version
+     */
+    public static List<Train> read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // A single mapping can't be larger than the largest int.
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException(file + " is too large to be loaded as a fleet file");
+
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Loads the trains from the contents of a fleet file.
+     *
+     * @param buffer the contents of the file, from its current position
+     * @return the trains, in the order in which they were written
+     * @throws IOException when the contents aren't a fleet file of a supported version, or are corrupt
+     */
+    static List<Train> read(ByteBuffer buffer) throws IOException {
+        try {
+            if (buffer.getInt() != MAGIC) throw new IOException("Not a fleet file");
+            short version = buffer.getShort();
+            if (version != VERSION) throw new IOException("Unsupported fleet file version " + version);
+
+            // Every count is checked against the rest of the file before anything is allocated for it.
+            int numberOfTrains = readCount(buffer, TRAIN_BYTES, "trains");
+            List<Train> trains = new ArrayList<>(numberOfTrains);
+
+            for (int t = 0; t < numberOfTrains; t++) {
+                Locomotive engine = new Locomotive(buffer.getInt(), buffer.getInt());
+                String origin = readString(buffer);
+                String destination = readString(buffer);
+                Train train = new Train(engine, origin, destination);
+
+                Wagon[] wagons = new Wagon[readCount(buffer, WAGON_BYTES, "wagons")];
+                if (wagons.length > engine.getMaxWagons())
+                    throw new IOException("Train " + t + " of the fleet file has more wagons than its locomotive can pull");
+
+                for (int i = 0; i < wagons.length; i++) {
+                    byte type = buffer.get();
+                    int id = buffer.getInt();
+                    int capacity = buffer.getInt();
+
+                    if (type == PASSENGER_WAGON) wagons[i] = new PassengerWagon(id, capacity);
+                    else if (type == FREIGHT_WAGON) wagons[i] = new FreightWagon(id, capacity);
+                    else throw new IOException("Unknown wagon type " + type + " in train " + t + " of the fleet file");
+
+                    // A train has only one type of wagons.
+                    if (wagons[i].getClass() != wagons[0].getClass())
+                        throw new IOException("Train " + t + " of the fleet file has wagons of different types");
+                }
+
+                // The wagons were written from a valid train, so they are linked without checking them again,
+                // only the index of the train still rejects wagons with the same id.
+                try {
+                    train.setWagons(wagons);
+                } catch (IllegalStateException e) {
+                    throw new IOException("Train " + t + " of the fleet file has wagons with the same id", e);
+                }
+                trains.add(train);
+            }
+
+            return trains;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("The fleet file ends unexpectedly", e);
+        }
+    }
+
+    private static void writeString(DataOutputStream output, String string) throws IOException {
+        // A missing origin or destination is stored as a negative length.
+        if (string == null) {
+            output.writeInt(-1);
+            return;
+        }
+
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    /**
+     * Reads a count of items that each take at least the given number of bytes.
+     *
+     * @throws IOException if the count is negative or more items than the rest of the buffer can hold
+     */
+    private static int readCount(ByteBuffer buffer, int bytesPerItem, String items) throws IOException {
+        int count = buffer.getInt();
+        if (count < 0 || count > buffer.remaining() / bytesPerItem)
+            throw new IOException("The fleet file can't hold " + count + " " + items + " at position " + (buffer.position() - Integer.BYTES));
+
+        return count;
+    }
+
+    private static String readString(ByteBuffer buffer) throws IOException {
+        int length = buffer.getInt();
+        if (length < 0) return null;
+        if (length > buffer.remaining())
+            throw new IOException("The fleet file can't hold a string of " + length + " bytes at position " + (buffer.position() - Integer.BYTES));
+
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,309 @@
+package models;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Imports locomotives, trains and wagons from a delimited text file, one record per line:
+ * <pre>
+ * L,locNumber,maxWagons                 a locomotive
+ * T,locNumber,origin,destination        a train pulled by a locomotive defined before,
+ *                                       the wagons on the following lines are attached to it
+ * P,wagonId,numberOfSeats               a passenger wagon
+ * F,wagonId,maxWeight                   a freight wagon
+ * </pre>
+ * Empty lines and lines starting with # are skipped, spaces around the fields are ignored.
+ * The file is read in blocks of bytes and every line is parsed from these bytes directly, without creating a String per line.
+ * The wagons of a train are collected and linked in one go when the train is complete.
+ * A line that cannot be imported is rejected without stopping the import, e.g. a wagon of another type than
+ * the wagons of its train, or a wagon for which the locomotive has no capacity left.
+ *
+ * @author HvA HBO-ICT, Irene Doodeman, Kevin Breurken
+ */
+public class FleetImporter {
+    private static final int BLOCK_SIZE = 1 << 16;
+    private static final int MAX_FIELDS = 4;
+
+    private final byte delimiter;
+    private final List<Reject> rejects = new ArrayList<>();
+
+    // The fields of the current line, as positions in the buffer.
+    private final int[] fieldStarts = new int[MAX_FIELDS];
+    private final int[] fieldEnds = new int[MAX_FIELDS];
+    private byte[] buffer;
+
+    // The train that is being imported and the wagons collected for it so far.
+    private Train train;
+    private Wagon[] wagons = new Wagon[16];
+    private int numberOfWagons;
+
+    public FleetImporter() {
+        this((byte) ',');
+    }
+
+    /**
+     * @param delimiter the character between the fields of a line
+     */
+    public FleetImporter(byte delimiter) {
+        this.delimiter = delimiter;
+    }
+
+    /**
+     * @return the lines that were rejected by the last import, in the order of the file
+     */
+    public List<Reject> getRejects() {
+        return rejects;
+    }
+
+    /**
+     * Imports the trains from a file.
+     *
+     * @param file
+     * @return the imported trains, in the order of the file
+     * @throws IOException when the file cannot be read
+     */
+    public List<Train> importFleet(Path file) throws IOException {
+        try (InputStream input = Files.newInputStream(file)) {
+            return importFleet(input);
+        }
+    }
+
+    /**
+     * Imports the trains from a stream, which is read until its end.
+     *
+     * @param input
+     * @return the imported trains, in the order of the stream
+     * @throws IOException when the stream cannot be read
+     */
+    public List<Train> importFleet(InputStream input) throws IOException {
+        rejects.clear();
+        buffer = new byte[BLOCK_SIZE];
+
+        List<Train> trains = new ArrayList<>();
+        Map<Integer, Locomotive> locomotives = new HashMap<>();
+        Set<Integer> usedLocomotives = new HashSet<>();
+        WagonIndex importedWagons = new WagonIndex();
+
+        int lineNumber = 0;
+        int end = 0;        // the end of the bytes read into the buffer
+        int lineStart = 0;
+        boolean endOfInput = false;
+
+        while (true) {
+            // Looks for the end of the current line in the bytes read so far.
+            int lineEnd = lineStart;
+            while (lineEnd < end && buffer[lineEnd] != '\n') lineEnd++;
+
+            if (lineEnd == end && !endOfInput) {
+                // The line continues beyond the buffer, so it is moved to the front and the buffer is filled up.
+                System.arraycopy(buffer, lineStart, buffer, 0, end - lineStart);
+                end -= lineStart;
+                lineStart = 0;
+                if (end == buffer.length) buffer = Arrays.copyOf(buffer, 2 * buffer.length);
+
+                int read = input.read(buffer, end, buffer.length - end);
+                if (read < 0) endOfInput = true;
+                else end += read;
+                continue;
+            }
+            if (lineStart == end && endOfInput) break;
+
+            lineNumber++;
+            String reason = importLine(lineStart, lineEnd, trains, locomotives, usedLocomotives, importedWagons);
+            if (reason != null) rejects.add(new Reject(lineNumber, text(lineStart, lineEnd), reason));
+
+            lineStart = Math.min(lineEnd + 1, end);
+        }
+
+        completeTrain();
+        buffer = null;
+
+        return trains;
+    }
+
+    /**
+     * Imports the record on a single line.
+     *
+     * @param start the position of the line in the buffer
+     * @param end   the position of the end of the line in the buffer
+     * @return the reason why the line is rejected, or null if the line has been imported
+     */
+    private String importLine(int start, int end, List<Train> trains, Map<Integer, Locomotive> locomotives,
+                              Set<Integer> usedLocomotives, WagonIndex importedWagons) {
+        // Skips empty lines and comments.
+        int first = start;
+        while (first < end && isSpace(buffer[first])) first++;
+        if (first == end || buffer[first] == '#') return null;
+
+        int numberOfFields = splitFields(start, end);
+        if (numberOfFields < 0) return "too many fields";
+        if (fieldEnds[0] - fieldStarts[0] != 1) return "unknown record type";
+
+        try {
+            switch (buffer[fieldStarts[0]]) {
+                case 'L': {
+                    if (numberOfFields != 3) return "a locomotive needs a number and a maximum number of wagons";
+
+                    int locNumber = parseInt(1);
+                    if (locomotives.containsKey(locNumber)) return "locomotive " + locNumber + " already exists";
+
+                    locomotives.put(locNumber, new Locomotive(locNumber, parseInt(2)));
+                    return null;
+                }
+                case 'T': {
+                    if (numberOfFields != 4) return "a train needs a locomotive, an origin and a destination";
+
+                    // The wagons that follow an invalid train are rejected as well.
+                    completeTrain();
+
+                    Locomotive engine = locomotives.get(parseInt(1));
+                    if (engine == null) return "locomotive " + parseInt(1) + " doesn't exist";
+                    if (!usedLocomotives.add(engine.getLocNumber()))
+                        return "locomotive " + engine.getLocNumber() + " already pulls a train";
+
+                    train = new Train(engine, text(fieldStarts[2], fieldEnds[2]), text(fieldStarts[3], fieldEnds[3]));
+                    trains.add(train);
+                    return null;
+                }
+                case 'P':
+                case 'F': {
+                    if (numberOfFields != 3) return "a wagon needs an id and a capacity";
+                    if (train == null) return "there is no train to attach the wagon to";
+
+                    int wagonId = parseInt(1);
+                    if (importedWagons.get(wagonId) != null) return "wagon " + wagonId + " already exists";
+
+                    boolean passengerWagon = buffer[fieldStarts[0]] == 'P';
+                    if (numberOfWagons > 0 && passengerWagon != wagons[0] instanceof PassengerWagon)
+                        return "the wagon doesn't match the type of the wagons of train " + train.getEngine();
+                    if (numberOfWagons >= train.getEngine().getMaxWagons())
+                        return "locomotive " + train.getEngine() + " can't pull more than " + train.getEngine().getMaxWagons() + " wagons";
+
+                    Wagon wagon = passengerWagon ? new PassengerWagon(wagonId, parseInt(2)) : new FreightWagon(wagonId, parseInt(2));
+                    importedWagons.put(wagon);
+                    if (numberOfWagons == wagons.length) wagons = Arrays.copyOf(wagons, 2 * wagons.length);
+                    wagons[numberOfWagons++] = wagon;
+                    return null;
+                }
+                default:
+                    return "unknown record type";
+            }
+        } catch (NumberFormatException e) {
+            return e.getMessage();
+        }
+    }
+
+    /**
+     * Links the wagons collected for the current train to it.
+     */
+    private void completeTrain() {
+        if (train != null && numberOfWagons > 0) train.setWagons(Arrays.copyOf(wagons, numberOfWagons));
+
+        Arrays.fill(wagons, 0, numberOfWagons, null);
+        numberOfWagons = 0;
+        train = null;
+    }
+
+    /**
+     * Finds the fields of a line, leaving out the spaces around them.
+     *
+     * @return the number of fields, or -1 if the line has more fields than any record
+     */
+    private int splitFields(int start, int end) {
+        int numberOfFields = 0;
+        int fieldStart = start;
+
+        for (int position = start; position <= end; position++) {
+            if (position < end && buffer[position] != delimiter) continue;
+
+            if (numberOfFields == MAX_FIELDS) return -1;
+            fieldStarts[numberOfFields] = fieldStart;
+            fieldEnds[numberOfFields] = position;
+            trim(numberOfFields);
+            numberOfFields++;
+            fieldStart = position + 1;
+        }
+
+        return numberOfFields;
+    }
+
+    private void trim(int field) {
+        while (fieldStarts[field] < fieldEnds[field] && isSpace(buffer[fieldStarts[field]])) fieldStarts[field]++;
+        while (fieldEnds[field] > fieldStarts[field] && isSpace(buffer[fieldEnds[field] - 1])) fieldEnds[field]--;
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+
+    /**
+     * Parses the given field of the current line as a non-negative number.
+     */
+    private int parseInt(int field) {
+        int start = fieldStarts[field];
+        int end = fieldEnds[field];
+        if (start == end) throw new NumberFormatException("field " + (field + 1) + " is empty");
+
+        int value = 0;
+        for (int position = start; position < end; position++) {
+            int digit = buffer[position] - '0';
+            if (digit < 0 || digit > 9 || value > (Integer.MAX_VALUE - digit) / 10)
+                throw new NumberFormatException("field " + (field + 1) + " is not a valid number: " + text(start, end));
+
+            value = 10 * value + digit;
+        }
+
+        return value;
+    }
+
+    private String text(int start, int end) {
+        // Leaves out the carriage return of a line that ends with \r\n.
+        if (end > start && buffer[end - 1] == '\r') end--;
+        return new String(buffer, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A line that could not be imported.
+     */
+    public static class Reject {
+        private final int lineNumber;
+        private final String line;
+        private final String reason;
+
+        private Reject(int lineNumber, String line, String reason) {
+            this.lineNumber = lineNumber;
+            this.line = line;
+            this.reason = reason;
+        }
+
+        /**
+         * @return the number of the line in the file (starting at 1)
+         */
+        public int getLineNumber() {
+            return lineNumber;
+        }
+
+        public String getLine() {
+            return line;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("line %d: %s (%s)", lineNumber, line, reason);
+        }
+    }
+}
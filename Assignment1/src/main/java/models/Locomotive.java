@@ -14,6 +14,10 @@ public class Locomotive {
         this.maxWagons = maxWagons;
     }
 
+    public int getLocNumber() {
+        return locNumber;
+    }
+
     public int getMaxWagons() {
         return maxWagons;
     }
@@ -0,0 +1,467 @@
+package models;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * A sequence of shunting operations on trains that is executed all-or-nothing.
+ * While the plan is validated or executed, it holds the locks of all trains involved, which are acquired
+ * in the same order as a ConcurrentShunter does, so no other plan or ConcurrentShunter can change these trains in between.
+ * <p>
+ * The whole plan is validated in a single pass, which follows the same rules for positions, type compatibility,
+ * wagon ids and locomotive capacity as the operations of Train. The validation starts from the immutable consists
+ * of the trains and changes those in the way the trains themselves do, so it copies no wagons,
+ * and every simulated step takes logarithmic time plus the time to check the ids of the wagons it moves.
+ * A wagon that is looked up by its id is followed through the earlier steps that changed its train,
+ * which takes time in the number of these steps instead of the length of the train.
+ * Only when every step is valid are the steps applied to the trains, without checking them again.
+ * If a step still fails with an exception, all trains and loose wagons involved are put back as they were before.
+ * <p>
+ * The loose wagons of a plan shouldn't be used by other threads while the plan is executed,
+ * and readers of the snapshots of the trains see every step of the plan as it is applied.
+ *
+ * @author HvA HBO-ICT, Irene Doodeman, Kevin Breurken
+ */
+public class ShuntingPlan {
+    private final List<Step> steps = new ArrayList<>();
+
+    /**
+     * Adds a step that moves the wagons from the given position of a train to the rear of toTrain,
+     * see Train.splitAtPosition
+     *
+     * @return this plan, so steps can be chained
+     */
+    public ShuntingPlan splitAtPosition(Train train, int position, Train toTrain) {
+        steps.add(new Step(train, toTrain, null,
+                simulation -> simulation.copyOf(train).splitAtPosition(position, simulation.copyOf(toTrain)),
+                wagon -> toTrain.takeOver(TrainMetrics.Operation.SPLIT_AT_POSITION, wagon, false)));
+        return this;
+    }
+
+    /**
+     * Adds a step that moves one wagon of a train to the rear of toTrain, see Train.moveOneWagon
+     *
+     * @return this plan, so steps can be chained
+     */
+    public ShuntingPlan moveOneWagon(Train train, int wagonId, Train toTrain) {
+        steps.add(new Step(train, toTrain, null,
+                simulation -> simulation.copyOf(train).moveOneWagon(wagonId, simulation.copyOf(toTrain)),
+                toTrain::takeOverOne));
+        return this;
+    }
+
+    /**
+     * Adds a step that reverses the sequence of wagons of a train, see Train.reverse
+     *
+     * @return this plan, so steps can be chained
+     */
+    public ShuntingPlan reverse(Train train) {
+        steps.add(new Step(train, null, null,
+                simulation -> simulation.copyOf(train).reverse(),
+                wagon -> train.reverse()));
+        return this;
+    }
+
+    /**
+     * Adds a step that inserts a sequence of wagons at the front of a train, see Train.insertAtFront
+     *
+     * @return this plan, so steps can be chained
+     */
+    public ShuntingPlan insertAtFront(Train train, Wagon wagon) {
+        steps.add(new Step(train, null, wagon,
+                simulation -> simulation.copyOf(train).attach(wagon, true),
+                movedWagon -> train.takeOver(TrainMetrics.Operation.INSERT_AT_FRONT, movedWagon, true)));
+        return this;
+    }
+
+    /**
+     * Adds a step that attaches a sequence of wagons to the rear of a train, see Train.attachToRear
+     *
+     * @return this plan, so steps can be chained
+     */
+    public ShuntingPlan attachToRear(Train train, Wagon wagon) {
+        steps.add(new Step(train, null, wagon,
+                simulation -> simulation.copyOf(train).attach(wagon, false),
+                movedWagon -> train.takeOver(TrainMetrics.Operation.ATTACH_TO_REAR, movedWagon, false)));
+        return this;
+    }
+
+    public int getNumberOfSteps() {
+        return steps.size();
+    }
+
+    /**
+     * Validates the whole plan without changing any train.
+     *
+     * @return the index of the first step that cannot be completed, or -1 if the whole plan can be executed
+     */
+    public int validate() {
+        List<Train> trains = lockTrains();
+        try {
+            return validate(new Simulation(trains));
+        } finally {
+            ConcurrentShunter.unlockAll(trains);
+        }
+    }
+
+    private int validate(Simulation simulation) {
+        for (int i = 0; i < steps.size(); i++) {
+            if (!steps.get(i).simulation.test(simulation)) return i;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Executes all steps of the plan if the whole plan is valid.
+     * No change is made to any train if one of the steps cannot be completed.
+     * If applying a step throws an exception, the steps that were applied before it are rolled back,
+     * which a journal that tracks the trains records as an operation of its own.
+     *
+     * @return whether the plan was executed
+     */
+    public boolean execute() {
+        List<Train> trains = lockTrains();
+        try {
+            Simulation simulation = new Simulation(trains);
+            if (validate(simulation) >= 0) return false;
+
+            // The trains stay locked since the validation, so every step can be applied without checking it again.
+            try {
+                for (int i = 0; i < steps.size(); i++) steps.get(i).application.accept(simulation.movedWagons.get(i));
+            } catch (RuntimeException e) {
+                simulation.rollBack();
+                throw e;
+            }
+
+            return true;
+        } finally {
+            ConcurrentShunter.unlockAll(trains);
+        }
+    }
+
+    /**
+     * Locks the trains of all steps, and the trains that the wagons given to the steps are part of.
+     *
+     * @return the locked trains, to be passed to ConcurrentShunter.unlockAll
+     */
+    private List<Train> lockTrains() {
+        while (true) {
+            List<Train> trains = ConcurrentShunter.lockAll(involvedTrains());
+
+            // A given wagon may have been moved to another train before the locks were acquired.
+            Set<Train> lockedTrains = Collections.newSetFromMap(new IdentityHashMap<>());
+            lockedTrains.addAll(trains);
+            if (lockedTrains.containsAll(involvedTrains())) return trains;
+
+            ConcurrentShunter.unlockAll(trains);
+        }
+    }
+
+    private List<Train> involvedTrains() {
+        List<Train> trains = new ArrayList<>();
+        for (Step step : steps) {
+            trains.add(step.train);
+            if (step.toTrain != null) trains.add(step.toTrain);
+            if (step.wagon != null && step.wagon.getTrain() != null) trains.add(step.wagon.getTrain());
+        }
+
+        return trains;
+    }
+
+    /**
+     * A step of the plan, which can be simulated on the consists of the trains and applied to the trains themselves.
+     * The application is given the wagon that the simulation found to be moved, or null if the step moves no wagon.
+     */
+    private static class Step {
+        private final Train train;
+        private final Train toTrain;  // null if the step involves one train
+        private final Wagon wagon;    // the wagon given to the step, or null
+        private final Predicate<Simulation> simulation;
+        private final Consumer<Wagon> application;
+
+        private Step(Train train, Train toTrain, Wagon wagon, Predicate<Simulation> simulation, Consumer<Wagon> application) {
+            this.train = train;
+            this.toTrain = toTrain;
+            this.wagon = wagon;
+            this.simulation = simulation;
+            this.application = application;
+        }
+    }
+
+    /**
+     * Keeps the copies of the trains that are involved in a plan, where the wagons that the plan moves end up,
+     * and the links of the loose wagons that the plan takes over.
+     */
+    private static class Simulation {
+        private final Map<Train, TrainCopy> copies = new IdentityHashMap<>();
+        private final Map<Wagon, Location> locations = new IdentityHashMap<>();  // of the wagons moved or looked up so far
+        private final List<Wagon> movedWagons = new ArrayList<>();              // the wagon moved by each simulated step
+        private final Map<Wagon, Wagon[]> looseLinks = new IdentityHashMap<>();  // the previous and next wagon of each
+
+        private Simulation(Collection<Train> trains) {
+            for (Train train : trains) copies.put(train, new TrainCopy(this, train));
+        }
+
+        private TrainCopy copyOf(Train train) {
+            return copies.get(train);
+        }
+
+        /**
+         * @return the copy of the train that the given wagon is part of, or null if it isn't part of any train
+         */
+        private TrainCopy copyContaining(Wagon wagon) {
+            // A wagon that the plan hasn't moved is still in the train that it is part of.
+            Location location = locations.get(wagon);
+            if (location != null) return location.copy;
+
+            return wagon.getTrain() == null ? null : copies.get(wagon.getTrain());
+        }
+
+        /**
+         * @param wagon a wagon that is part of one of the copies
+         * @return the position of the wagon in its copy
+         */
+        private int positionOf(Wagon wagon) {
+            Location location = locations.get(wagon);
+            if (location == null) {
+                // The trains themselves don't change during the validation, so they still hold the starting positions.
+                location = new Location(copies.get(wagon.getTrain()), wagon.getTrain().positionOf(wagon), 0);
+                locations.put(wagon, location);
+            }
+
+            // A step that moves the wagon itself locates it again, all other steps only shift its position.
+            List<Shift> shifts = location.copy.shifts;
+            for (; location.numberOfShifts < shifts.size(); location.numberOfShifts++) {
+                location.position = shifts.get(location.numberOfShifts).apply(location.position);
+            }
+            return location.position;
+        }
+
+        /**
+         * Puts all trains that were changed back to the wagons they had when the plan started,
+         * and links the loose wagons that were taken over to their former neighbours again.
+         */
+        private void rollBack() {
+            List<TrainCopy> changed = new ArrayList<>();
+            for (TrainCopy copy : copies.values()) {
+                if (copy.train.getConsist() != copy.consistBefore) changed.add(copy);
+            }
+
+            // Every train lets go of its wagons first, since they may have moved to any other train.
+            for (TrainCopy copy : changed) copy.train.setWagons(new Wagon[0]);
+            for (TrainCopy copy : changed) {
+                Wagon[] wagons = new Wagon[copy.consistBefore.getNumberOfWagons()];
+                int i = 0;
+                for (Wagon wagon : copy.consistBefore) wagons[i++] = wagon;
+                copy.train.setWagons(wagons);
+            }
+
+            for (Map.Entry<Wagon, Wagon[]> links : looseLinks.entrySet()) {
+                Wagon wagon = links.getKey(), previousWagon = links.getValue()[0], nextWagon = links.getValue()[1];
+                if (wagon.getTrain() != null) continue; // A wagon that was in a train is restored by the train.
+
+                wagon.setPreviousWagon(previousWagon);
+                wagon.setNextWagon(nextWagon);
+                if (previousWagon != null && previousWagon.getTrain() == null) previousWagon.setNextWagon(wagon);
+                if (nextWagon != null && nextWagon.getTrain() == null) nextWagon.setPreviousWagon(wagon);
+            }
+        }
+    }
+
+    /**
+     * The wagons of a train as the plan changes them, with the same operations as Train.
+     * The wagons are kept in a ConsistSnapshot, which starts as the consist of the train itself.
+     */
+    private static class TrainCopy {
+        private final Simulation simulation;
+        private final Train train;
+        private final ConsistSnapshot consistBefore;
+        private final WagonIndex newWagons = new WagonIndex();     // the wagons that the plan has moved into this train
+        private final List<Shift> shifts = new ArrayList<>();      // of the positions of the wagons that stay in this train
+        private ConsistSnapshot consist;
+
+        private TrainCopy(Simulation simulation, Train train) {
+            this.simulation = simulation;
+            this.train = train;
+            this.consistBefore = this.consist = train.getConsist();
+        }
+
+        private boolean splitAtPosition(int position, TrainCopy toTrain) {
+            Wagon wagon = consist.findWagonAtPosition(position);
+            if (wagon == null || toTrain == this) return false;
+
+            return toTrain.takeOver(this, position, wagon, false);
+        }
+
+        private boolean moveOneWagon(int wagonId, TrainCopy toTrain) {
+            Wagon wagon = find(wagonId);
+
+            if (wagon == null || !toTrain.isCompatible(wagon) || toTrain.find(wagonId) != null) return false;
+            if (toTrain.train.getEngine().getMaxWagons() < toTrain.size() + 1) return false;
+
+            int position = simulation.positionOf(wagon);
+            ConsistSnapshot[] parts = consist.split(position - 1);
+            ConsistSnapshot[] rear = parts[1].split(1);
+            consist = parts[0].append(rear[1]);
+            shifts.add(new Shift(position, -1, 0));
+
+            toTrain.add(rear[0], this, false);
+            simulation.movedWagons.add(wagon);
+            return true;
+        }
+
+        private boolean reverse() {
+            if (size() > 1) {
+                consist = consist.reverse();
+                shifts.add(new Shift(0, 0, size()));
+            }
+
+            simulation.movedWagons.add(null);
+            return true;
+        }
+
+        /**
+         * Takes over the given wagon and its tail, either from the copy of another train or as a loose sequence.
+         */
+        private boolean attach(Wagon wagon, boolean atFront) {
+            TrainCopy fromTrain = simulation.copyContaining(wagon);
+            if (fromTrain == this) return false;
+            if (fromTrain != null) return takeOver(fromTrain, simulation.positionOf(wagon), wagon, atFront);
+
+            // Loose wagons follow their own links, up to a wagon that an earlier step has taken over.
+            WagonIndex sequence = new WagonIndex();
+            int numberOfWagons = 0;
+            for (Wagon next = wagon; next != null && next.getTrain() == null && !simulation.locations.containsKey(next);
+                 next = next.getNextWagon()) {
+                if (sequence.get(next.getId()) != null || find(next.getId()) != null) return false;
+                sequence.put(next);
+                numberOfWagons++;
+            }
+            if (!canAttach(wagon, numberOfWagons)) return false;
+
+            Wagon next = wagon;
+            for (int i = 0; i < numberOfWagons; i++, next = next.getNextWagon()) {
+                simulation.looseLinks.put(next, new Wagon[]{next.getPreviousWagon(), next.getNextWagon()});
+            }
+            add(ConsistSnapshot.EMPTY.insert(0, wagon, numberOfWagons), null, atFront);
+            simulation.movedWagons.add(wagon);
+            return true;
+        }
+
+        /**
+         * Takes the wagons from the given position until the end of another train over,
+         * if they fit in this train and none of their ids is already used by a wagon of this train.
+         *
+         * @return whether the wagons were taken over
+         */
+        private boolean takeOver(TrainCopy fromTrain, int position, Wagon wagon, boolean atFront) {
+            if (!canAttach(wagon, fromTrain.size() - position + 1)) return false;
+
+            ConsistSnapshot[] parts = fromTrain.consist.split(position - 1);
+            // The ids of the wagons of a train are distinct already, and an empty train can't clash with them.
+            if (size() > 0) {
+                for (Wagon next : parts[1]) {
+                    if (find(next.getId()) != null) return false;
+                }
+            }
+
+            // No wagons stay behind the taken wagons, so the positions in the other train don't shift.
+            fromTrain.consist = parts[0];
+            add(parts[1], fromTrain, atFront);
+            simulation.movedWagons.add(wagon);
+            return true;
+        }
+
+        /**
+         * Adds a sequence of wagons that the plan has taken out of another train, or a loose sequence,
+         * to the front or the rear of this train, and locates every wagon of the sequence in this train.
+         *
+         * @param fromTrain the copy the sequence is taken out of, or null for a loose sequence
+         */
+        private void add(ConsistSnapshot sequence, TrainCopy fromTrain, boolean atFront) {
+            if (atFront && size() > 0) shifts.add(new Shift(0, sequence.getNumberOfWagons(), 0));
+
+            int position = atFront ? 0 : size();
+            for (Wagon wagon : sequence) {
+                if (fromTrain != null) fromTrain.newWagons.remove(wagon);
+                newWagons.put(wagon);
+                simulation.locations.put(wagon, new Location(this, ++position, shifts.size()));
+            }
+
+            consist = atFront ? sequence.append(consist) : consist.append(sequence);
+        }
+
+        private boolean isCompatible(Wagon wagon) {
+            Wagon firstWagon = consist.findWagonAtPosition(1); // All wagons of a train have the same type.
+            if (firstWagon == null) return true;
+
+            return (!(firstWagon instanceof FreightWagon) || wagon instanceof FreightWagon)
+                    && (!(firstWagon instanceof PassengerWagon) || wagon instanceof PassengerWagon);
+        }
+
+        private boolean canAttach(Wagon wagon, int numberOfNewWagons) {
+            return isCompatible(wagon) && train.getEngine().getMaxWagons() >= size() + numberOfNewWagons;
+        }
+
+        /**
+         * @return the wagon with the given id in this train, or null if there is none
+         */
+        private Wagon find(int wagonId) {
+            // The wagon that the train itself has by this id may have been moved away by an earlier step.
+            Wagon wagon = train.findWagonById(wagonId);
+            if (wagon != null && simulation.copyContaining(wagon) == this) return wagon;
+
+            return newWagons.get(wagonId);
+        }
+
+        private int size() {
+            return consist.getNumberOfWagons();
+        }
+    }
+
+    /**
+     * Where a wagon was in the simulation, up to the given number of shifts of its copy.
+     */
+    private static final class Location {
+        private final TrainCopy copy;
+        private int position;
+        private int numberOfShifts;
+
+        private Location(TrainCopy copy, int position, int numberOfShifts) {
+            this.copy = copy;
+            this.position = position;
+            this.numberOfShifts = numberOfShifts;
+        }
+    }
+
+    /**
+     * How a step changes the positions of the wagons that stay in a train:
+     * the wagons behind a given position move by a distance when wagons are taken out or inserted in front of them,
+     * or all wagons swap ends when the train is reversed.
+     */
+    private static final class Shift {
+        private final int after;
+        private final int distance;
+        private final int reversedSize;   // the number of wagons of the reversed train, or 0 if the train isn't reversed
+
+        private Shift(int after, int distance, int reversedSize) {
+            this.after = after;
+            this.distance = distance;
+            this.reversedSize = reversedSize;
+        }
+
+        private int apply(int position) {
+            if (reversedSize > 0) return reversedSize + 1 - position;
+
+            return position > after ? position + distance : position;
+        }
+    }
+}
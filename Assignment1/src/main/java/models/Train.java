@@ -1,10 +1,26 @@
 package models;
 
+import java.util.Collection;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
 /**
  * Functions as singly-ended, doubly linked list for Wagons.
  * Has a Locomotive.
  * A (sequence of) Wagon(s) can be attached to the Locomotive of this train.
  * Always has a Locomotive and can have none or more Wagons.
+ * Keeps track of its last Wagon, its number of Wagons, an index of its Wagons by id
+ * and a tree of its Wagons by position, so these don't require walking the sequence.
+ * The total number of seats and total maximum weight are kept up to date in the same way;
+ * when assertions are enabled (java -ea) they are verified against the sequence every time they are asked for.
+ * Wagons that are attached to this train are owned by it, therefore the sequence of a train
+ * should only be rearranged via the methods of the train itself.
+ * The train has an orientation that is flipped to reverse it, the wagons store their links in that orientation.
+ * When the train is tracked by a TrainJournal, every change of its sequence is recorded so it can be undone,
+ * and when it is part of a Fleet, the fleet is told about every change of its wagons.
+ * After every operation the train publishes an immutable ConsistSnapshot of its wagons,
+ * so other threads can read the wagons of the train without locking it.
+ * When TrainMetrics are enabled, the links followed and changed by every public operation are counted.
  *
  * @author HvA HBO-ICT, Irene Doodeman, Kevin Breurken
  */
@@ -13,6 +29,19 @@ public class Train {
     private String destination;
     private Locomotive engine;
     private Wagon firstWagon;
+    private Wagon lastWagon;
+    private int numberOfWagons;
+    private int totalNumberOfSeats;
+    private int totalMaxWeight;
+    private boolean reversed;   // whether the wagons store their links (and the tree its positions) in reverse order
+    private final WagonIndex wagonIndex = new WagonIndex();
+    private final WagonTree wagonTree = new WagonTree();
+    final ReentrantLock lock = new ReentrantLock(); // guards this train when it is shared by a ConcurrentShunter
+    TrainJournal journal;   // records the changes of this train, if it is tracked by a journal
+    volatile Fleet fleet;   // indexes this train by its capacity, if it is part of a fleet
+    private ConsistSnapshot consist = ConsistSnapshot.EMPTY;            // the wagons as they are changed
+    private volatile ConsistSnapshot snapshot = ConsistSnapshot.EMPTY;  // the wagons after the last operation
+    private int operationDepth; // the number of operations of this train in progress
 
     public Train(Locomotive engine, String origin, String destination) {
         this.engine = engine;
@@ -36,6 +65,14 @@ public class Train {
         return engine;
     }
 
+    public String getOrigin() {
+        return origin;
+    }
+
+    public String getDestination() {
+        return destination;
+    }
+
     public Wagon getFirstWagon() {
         return firstWagon;
     }
@@ -46,91 +83,357 @@ public class Train {
      * (sustaining all representation invariants)
      *
      * @param wagon the first wagon of a sequence of wagons to be attached
+     * @throws IllegalArgumentException if two wagons of the sequence have the same id, before anything is changed
      */
     public void setFirstWagon(Wagon wagon) {
-        firstWagon = wagon;
+        if (wagon != null && hasDuplicateIds(wagon)) throw new IllegalArgumentException("The wagons need distinct ids");
+
+        operation(TrainMetrics.Operation.SET_FIRST_WAGON, () -> {
+            // The given wagon could be part of another train (or of this one), which needs to let go of it first.
+            if (wagon != null && wagon.getTrain() != null) wagon.getTrain().release(wagon);
+
+            // The current wagons aren't part of this train anymore.
+            if (hasWagons()) release(firstWagon);
+
+            if (wagon != null) {
+                wagon.detachFront();
+                firstWagon = wagon;
+                lastWagon = claim(0, wagon);
+            }
+            return true;
+        });
     }
 
     /**
-     * Loops through the sequence of Wagons attached to the train until all have been counted.
-     *
      * @return the number of Wagons connected to the train
      */
     public int getNumberOfWagons() {
-        if (!hasWagons()) return 0;
+        return numberOfWagons;
+    }
 
-        Wagon lastWagon = getFirstWagon();
-        int numberOfWagons = 1;  // Set to one since the first wagon is already the last wagon counted.
+    /**
+     * @return the last wagon attached to the train
+     */
+    public Wagon getLastWagonAttached() {
+        return lastWagon;
+    }
 
-        while (lastWagon.hasNextWagon()) {
-            lastWagon = lastWagon.getNextWagon();
-            numberOfWagons++; // The current lastWagon gets counted.
+    /**
+     * Gives the wagons of this train as they were after the last completed operation.
+     * The snapshot can be read by any thread, also while this train is being changed.
+     *
+     * @return an immutable snapshot of the wagons of this train
+     */
+    public ConsistSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Gives the wagons of this train as they are now, also halfway through an operation.
+     *
+     * @return an immutable snapshot of the wagons of this train
+     */
+    ConsistSnapshot getConsist() {
+        return consist;
+    }
+
+    /**
+     * @return whether the wagons of this train store their links in the reversed orientation
+     */
+    boolean isReversed() {
+        return reversed;
+    }
+
+    /**
+     * @param wagon a wagon that is part of this train
+     * @return the position of the wagon in this train (starting at 1)
+     */
+    int positionOf(Wagon wagon) {
+        return treePosition(wagonTree.positionOf(wagon));
+    }
+
+    /**
+     * Converts a position in this train to the position in the tree of wagons and vice versa,
+     * which are each others mirror image when the train is reversed.
+     *
+     * @param position
+     * @return the converted position
+     */
+    private int treePosition(int position) {
+        return reversed ? numberOfWagons + 1 - position : position;
+    }
+
+    /**
+     * Makes this train the owner of the given wagon and its tail, and adds them to the number of wagons.
+     * The wagons are not linked to the sequence of this train, that's up to the caller.
+     *
+     * @param position the number of wagons of this train that will be in front of the claimed sequence
+     * @param wagon    the first wagon of a sequence of wagons that isn't part of any train
+     * @return the last wagon of the claimed sequence
+     */
+    private Wagon claim(int position, Wagon wagon) {
+        int numberOfWagonsBefore = numberOfWagons;
+        Wagon lastClaimed = wagon;
+
+        for (Wagon currentWagon = wagon; currentWagon != null; currentWagon = currentWagon.getNextWagon()) {
+            currentWagon.setTrain(this);
+            wagonIndex.put(currentWagon);
+            addToTotals(currentWagon, 1);
+            numberOfWagons++;
+            lastClaimed = currentWagon;
         }
 
-        return numberOfWagons;
+        // The tree follows the orientation of the train, so a reversed train gets the sequence back to front.
+        if (reversed) wagonTree.insert(numberOfWagonsBefore - position, lastClaimed, true);
+        else wagonTree.insert(position, wagon, false);
+        consist = consist.insert(position, wagon, numberOfWagons - numberOfWagonsBefore);
+        publish();
+
+        if (journal != null) journal.recordInsertion(this, position + 1, wagon, numberOfWagons - numberOfWagonsBefore);
+        // The claimed wagons may not be linked to the first wagon yet, but have the type of the train.
+        Fleet fleet = this.fleet;
+        if (fleet != null) fleet.update(this, wagon);
+
+        return lastClaimed;
     }
 
     /**
-     * Loops through the sequences of Wagons attached to the train
-     * until the last wagon in the sequence has been found.
+     * Lets go of the given wagon and its tail, the wagon in front of it becomes the last wagon of this train.
+     * The wagons are not detached from the sequence of this train, that's up to the caller.
      *
-     * @return the last wagon attached to the train
+     * @param wagon a wagon that is part of this train
      */
-    public Wagon getLastWagonAttached() {
-        if (!hasWagons()) return null;
+    private void release(Wagon wagon) {
+        release(wagon, numberOfWagons - positionOf(wagon) + 1);
+    }
 
-        Wagon lastWagon = getFirstWagon();
-        while (lastWagon.hasNextWagon()) {
-            lastWagon = lastWagon.getNextWagon();
+    /**
+     * Lets go of the given wagon and the wagons behind it, up to the given number of wagons.
+     * The wagons are not removed from the sequence of this train, that's up to the caller.
+     *
+     * @param wagon              a wagon that is part of this train
+     * @param numberOfReleased   the number of wagons to let go of, starting with the given wagon
+     */
+    private void release(Wagon wagon, int numberOfReleased) {
+        int position = positionOf(wagon);
+        if (journal != null) journal.recordRemoval(this, position, wagon, numberOfReleased);
+
+        // The released wagons are mirrored in the tree when the train is reversed.
+        wagonTree.remove(reversed ? numberOfWagons - position - numberOfReleased + 2 : position, numberOfReleased);
+        consist = consist.remove(position, numberOfReleased);
+        publish();
+
+        Wagon lastReleased = wagon;
+        for (int i = 0; i < numberOfReleased; i++) {
+            if (i > 0) lastReleased = lastReleased.getNextWagon();
+
+            lastReleased.setTrain(null);
+            wagonIndex.remove(lastReleased);
+            addToTotals(lastReleased, -1);
+            numberOfWagons--;
         }
 
-        return lastWagon;
+        if (wagon == firstWagon) firstWagon = lastReleased.getNextWagon();
+        if (lastReleased == lastWagon) lastWagon = wagon.getPreviousWagon();
+
+        // An empty train starts over in its original orientation.
+        if (firstWagon == null) {
+            wagonIndex.clear();
+            reversed = false;
+        }
+
+        Fleet fleet = this.fleet;
+        if (fleet != null) fleet.update(this, firstWagon);
     }
 
     /**
-     * Loops through the sequence of passengerWagons and add up the amount of seats.
+     * Inserts a sequence of wagons at the given position, without checking whether it can be attached.
+     * Used by the journal of this train to replay its changes.
      *
-     * @return the total number of seats on a passenger train
-     * (return 0 for a freight train)
+     * @param position       the position the given wagon gets in this train (starting at 1)
+     * @param wagon          the first wagon of a sequence of wagons that isn't part of any train
+     * @param numberOfWagons the number of wagons of the sequence, any wagons linked behind them are cut off
      */
-    public int getTotalNumberOfSeats() {
-        // Returns if the Train isn't a passengerWagon or if it doesn't have any Wagons.
-        if (!isPassengerTrain() || !hasWagons()) return 0;
+    void insertSequence(int position, Wagon wagon, int numberOfWagons) {
+        Wagon frontWagon = findWagonAtPosition(position - 1);
+        Wagon wagonAtPosition = findWagonAtPosition(position);
 
-        int numberOfSeats = 0;
+        // Wagons that were dropped by restoring a snapshot may still be linked behind the recorded sequence.
+        Wagon lastWagonOfSequence = wagon;
+        for (int i = 1; i < numberOfWagons; i++) lastWagonOfSequence = lastWagonOfSequence.getNextWagon();
+        lastWagonOfSequence.detachTail();
+
+        wagon.detachFront();
+        Wagon lastWagonOfNewGroup = claim(position - 1, wagon);
+
+        // Puts the new group in between the Wagon at the position and the Wagon in front of it.
+        if (wagonAtPosition != null) {
+            wagonAtPosition.detachFront();
+            lastWagonOfNewGroup.attachTail(wagonAtPosition);
+        } else lastWagon = lastWagonOfNewGroup;
+
+        if (frontWagon != null) frontWagon.attachTail(wagon);
+        else firstWagon = wagon;
+    }
+
+    /**
+     * Removes the given number of wagons from the given position onwards, and closes the gap they leave behind.
+     * Used by the journal of this train to replay its changes.
+     *
+     * @param position         the position of the first wagon to remove (starting at 1)
+     * @param numberOfRemoved  the number of wagons to remove
+     * @return the first wagon of the removed sequence, which isn't attached to any wagon of this train anymore
+     */
+    Wagon removeSequence(int position, int numberOfRemoved) {
+        Wagon wagon = findWagonAtPosition(position);
+        Wagon frontWagon = wagon.getPreviousWagon();
+        Wagon rearWagon = findWagonAtPosition(position + numberOfRemoved);
 
-        PassengerWagon lastWagon = (PassengerWagon) firstWagon;
-        while (lastWagon.hasNextWagon()) {
-            numberOfSeats += lastWagon.getNumberOfSeats();
-            lastWagon = (PassengerWagon) lastWagon.getNextWagon();
+        release(wagon, numberOfRemoved);
+
+        wagon.detachFront();
+        if (rearWagon != null) {
+            rearWagon.detachFront();
+            if (frontWagon != null) frontWagon.attachTail(rearWagon);
         }
 
-        numberOfSeats += lastWagon.getNumberOfSeats(); // Counts the seats of the last wagon attached
+        return wagon;
+    }
 
-        return numberOfSeats;
+    /**
+     * Replaces the wagons of this train by the given wagons in the given order, without checking whether they can be attached.
+     * Used by the journal of this train to restore a snapshot, and to build trains that are loaded from a FleetFile
+     * or converted from a TrainYard.
+     *
+     * @param wagons distinct wagons that aren't part of any train, they are cut loose from any other wagon first
+     */
+    void setWagons(Wagon[] wagons) {
+        operation(null, () -> {
+            if (hasWagons()) release(firstWagon);
+
+            if (wagons.length > 0) {
+                firstWagon = linkLoose(wagons);
+                lastWagon = claim(0, firstWagon);
+            }
+            return true;
+        });
     }
 
     /**
-     * calculates the total maximum weight of a freight train.
+     * Links the given wagons into a single sequence in the given order.
      *
-     * @return the total maximum weight of a freight train
-     * (return 0 for a passenger train)
+     * @param wagons distinct wagons that aren't part of any train, they are cut loose from any other wagon first
+     * @return the first wagon of the sequence
      */
-    public int getTotalMaxWeight() {
-        // Returns if the Train isn't a Freightwagon or if it doesn't have any Wagons.
-        if (!isFreightTrain() || !hasWagons()) return 0;
+    private static Wagon linkLoose(Wagon[] wagons) {
+        for (Wagon wagon : wagons) {
+            wagon.detachFront();
+            wagon.detachTail();
+        }
+
+        // The wagons are all loose now, so they can be linked directly.
+        for (int i = 1; i < wagons.length; i++) {
+            if (TrainMetrics.enabled) TrainMetrics.countAttach();
+            wagons[i - 1].setNextWagon(wagons[i]);
+            wagons[i].setPreviousWagon(wagons[i - 1]);
+        }
+
+        return wagons[0];
+    }
+
+    /**
+     * Performs a change of this train as a single operation in the journal of this train (if any),
+     * so it is undone as a whole, including the changes it makes to other trains.
+     * The snapshot of this train is published once the outermost operation is done,
+     * so readers never see the train halfway through an operation.
+     *
+     * @param kind      the public operation that is counted when TrainMetrics are enabled, or null to not count it
+     * @param operation the change, returning whether it could be completed successfully
+     * @return the result of the operation
+     */
+    private boolean operation(TrainMetrics.Operation kind, BooleanSupplier operation) {
+        TrainJournal journal = this.journal;
+        boolean measured = TrainMetrics.enabled && kind != null;
+        if (measured) TrainMetrics.begin(kind);
+        operationDepth++;
+        if (journal != null) journal.beginOperation();
+        try {
+            return operation.getAsBoolean();
+        } finally {
+            if (journal != null) journal.endOperation();
+            operationDepth--;
+            publish();
+            if (measured) TrainMetrics.end();
+        }
+    }
+
+    /**
+     * Publishes the current wagons to the readers of the snapshot, unless an operation of this train is in progress.
+     * Changes that other trains make to this train outside of its own operations are published right away.
+     */
+    private void publish() {
+        if (operationDepth == 0 && snapshot != consist) snapshot = consist;
+    }
 
-        int totalMaxWeight = 0;
+    /**
+     * Adds the seats or the maximum weight of the given wagon to the totals of this train.
+     *
+     * @param wagon
+     * @param sign  1 to add the wagon, -1 to subtract it
+     */
+    private void addToTotals(Wagon wagon, int sign) {
+        if (wagon instanceof PassengerWagon)
+            totalNumberOfSeats += sign * ((PassengerWagon) wagon).getNumberOfSeats();
+        else if (wagon instanceof FreightWagon)
+            totalMaxWeight += sign * ((FreightWagon) wagon).getMaxWeight();
+    }
 
-        FreightWagon lastWagon = (FreightWagon) firstWagon;
-        while (lastWagon.hasNextWagon()) {
-            totalMaxWeight += lastWagon.getMaxWeight();
-            lastWagon = (FreightWagon) lastWagon.getNextWagon();
+    /**
+     * Loops through the sequence of Wagons and adds up the amount of seats and maximum weight,
+     * to verify that the totals kept by this train are still correct.
+     *
+     * @return whether the totals of this train match its sequence of wagons
+     */
+    private boolean totalsMatchSequence() {
+        int numberOfSeats = 0;
+        int maxWeight = 0;
+
+        for (Wagon wagon = firstWagon; wagon != null; wagon = wagon.getNextWagon()) {
+            if (wagon instanceof PassengerWagon) numberOfSeats += ((PassengerWagon) wagon).getNumberOfSeats();
+            else if (wagon instanceof FreightWagon) maxWeight += ((FreightWagon) wagon).getMaxWeight();
         }
 
-        totalMaxWeight += lastWagon.getMaxWeight(); // Counts the weight of the last wagon attached
+        return numberOfSeats == totalNumberOfSeats && maxWeight == totalMaxWeight;
+    }
+
+    /**
+     * @return the total number of seats on a passenger train
+     * (return 0 for a freight train)
+     */
+    public int getTotalNumberOfSeats() {
+        assert totalsMatchSequence() : this + " has a total of " + totalNumberOfSeats + " seats that doesn't match its wagons";
+
+        // Returns if the Train isn't a passengerWagon or if it doesn't have any Wagons.
+        return isPassengerTrain() ? totalNumberOfSeats : 0;
+    }
+
+    /**
+     * @return the total maximum weight of a freight train
+     * (return 0 for a passenger train)
+     */
+    public int getTotalMaxWeight() {
+        assert totalsMatchSequence() : this + " has a total maximum weight of " + totalMaxWeight + " that doesn't match its wagons";
+
+        // Returns if the Train isn't a Freightwagon or if it doesn't have any Wagons.
+        return isFreightTrain() ? totalMaxWeight : 0;
+    }
 
-        return totalMaxWeight;
+    /**
+     * @return the total number of seats of a passenger train or the total maximum weight of a freight train,
+     * without verifying it against the sequence
+     */
+    int getCapacity() {
+        return numberOfWagons == 0 ? 0 : totalNumberOfSeats + totalMaxWeight; // A train has only one type of wagons.
     }
 
     /**
@@ -141,21 +444,10 @@ public class Train {
      * (return null if the position is not valid for this train)
      */
     public Wagon findWagonAtPosition(int position) {
-        // Can't find a Wagon if there aren't any.
-       // A position smaller than 1 is not possible.
-        if (!hasWagons() || position < 1) return null;
-
-        Wagon currentWagon = getFirstWagon();
-        int currentPosition = 1;
-
-        while (currentWagon.hasNextWagon() && currentPosition != position) {
-           // Moves to the next Wagon in the sequences and increases the position by 1.
-            currentWagon = currentWagon.getNextWagon();
-            currentPosition++;
-        }
-
         // Returns the requested Wagon or null if it hasn't been found (position isn't valid).
-        return currentPosition == position ? currentWagon : null;
+        if (position < 1 || position > numberOfWagons) return null;
+
+        return wagonTree.get(treePosition(position));
     }
 
     /**
@@ -166,17 +458,8 @@ public class Train {
      * (return null if no wagon was found with the given wagonId)
      */
     public Wagon findWagonById(int wagonId) {
-        if (!hasWagons()) return null;
-
-        Wagon currentWagon = getFirstWagon();
-
-        do {
-            if (currentWagon.getId() == wagonId) return currentWagon;
-            currentWagon = currentWagon.getNextWagon();
-        } while (currentWagon != null);
-
         // Returns null in the case the id hasn't been found and therefore isn't valid
-        return null;
+        return wagonIndex.get(wagonId);
     }
 
     /**
@@ -195,6 +478,39 @@ public class Train {
         return getEngine().getMaxWagons() >= (getNumberOfWagons() + wagon.getTailLength() + 1);
     }
 
+    /**
+     * Checks if an id of the given sequence of wagons is already used by a wagon of this train or of the sequence,
+     * since the index of this train can only find one wagon by each id.
+     *
+     * @param wagon the first wagon of a sequence of wagons to be attached
+     * @return whether any id of the sequence is taken
+     */
+    private boolean sharesIdWith(Wagon wagon) {
+        // The wagons of an empty train can't clash with the sequence.
+        for (Wagon currentWagon = hasWagons() ? wagon : null; currentWagon != null;
+             currentWagon = currentWagon.getNextWagon()) {
+            if (findWagonById(currentWagon.getId()) != null) return true;
+        }
+        return hasDuplicateIds(wagon);
+    }
+
+    /**
+     * @param wagon the first wagon of a sequence of wagons
+     * @return whether two wagons of the sequence have the same id
+     */
+    private static boolean hasDuplicateIds(Wagon wagon) {
+        // Only a sequence of more than one wagon can clash with itself,
+        // and the index of a train already keeps the ids of its wagons distinct.
+        if (!wagon.hasNextWagon() || wagon.getTrain() != null) return false;
+
+        WagonIndex sequence = new WagonIndex();
+        for (Wagon currentWagon = wagon; currentWagon != null; currentWagon = currentWagon.getNextWagon()) {
+            if (sequence.get(currentWagon.getId()) != null) return true;
+            sequence.put(currentWagon);
+        }
+        return false;
+    }
+
     /**
      * Checks if the given Wagon is compatible with the current Train.
      *
@@ -214,25 +530,16 @@ public class Train {
      * @return whether the insertion could be completed successfully
      */
     public boolean insertAtFront(Wagon wagon) {
-        if (findWagonById(wagon.id) != null) return false;
+        return operation(TrainMetrics.Operation.INSERT_AT_FRONT, () -> {
+            if (wagon.getTrain() == this || !canAttach(wagon) || sharesIdWith(wagon)) return false;
 
-        if (!canAttach(wagon)) return false;
+            // Takes the Wagon (and its tail) over from the sequence it's currently part of.
+            if (wagon.getTrain() != null) wagon.getTrain().release(wagon);
+            wagon.detachFront();
 
-        // In the case there are no Wagons attached, the Wagon can be set at the first wagon of the sequence.
-        if (!hasWagons()) {
-            setFirstWagon(wagon);
+            prepend(wagon);
             return true;
-        }
-
-        // Gets the last Wagon attached to the given Wagon.
-        Wagon lastWagonOfNewGroup = wagon.getLastWagonAttached();
-        // Connects the last Wagon attached to the given Wagon in front of the first wagon connected to the train.
-        lastWagonOfNewGroup.setNextWagon(getFirstWagon());
-        getFirstWagon().setPreviousWagon(lastWagonOfNewGroup);
-
-        setFirstWagon(wagon);
-
-        return true;
+        });
     }
 
     /**
@@ -245,22 +552,32 @@ public class Train {
      * @return whether the insertion could be completed successfully
      */
     public boolean insertAtPosition(int position, Wagon wagon) {
-        if (!hasWagons()) {
-            if (position > 1) return false; // Returns if the position isn't valid
-            attachToRear(wagon);
-            return true;
-        }
-
-        // Checks if the Wagon can be attached
-        if (!canAttach(wagon)) return false;
-        // Checks if the position is valid
-        int currentLength = getFirstWagon().getTailLength() + 1;
-        if (position <= 0 || position > currentLength) return false;
-
-        // Attaches and detaches the wagons
-        wagon.getLastWagonAttached().attachTail(findWagonAtPosition(position));
+        return operation(TrainMetrics.Operation.INSERT_AT_POSITION, () -> {
+            if (!hasWagons()) {
+                if (position != 1) return false; // Returns if the position isn't valid
+                return attachToRear(wagon);
+            }
+
+            // Checks if the Wagon can be attached
+            if (wagon.getTrain() == this || !canAttach(wagon) || sharesIdWith(wagon)) return false;
+            // Checks if the position is valid
+            if (position <= 0 || position > getNumberOfWagons()) return false;
+
+            Wagon wagonAtPosition = findWagonAtPosition(position);
+
+            // Takes the Wagon (and its tail) over from the sequence it's currently part of.
+            if (wagon.getTrain() != null) wagon.getTrain().release(wagon);
+            wagon.detachFront();
+            Wagon lastWagonOfNewGroup = claim(position - 1, wagon);
+
+            // Puts the new group in between the Wagon at the position and the Wagon in front of it.
+            Wagon frontWagon = wagonAtPosition.detachFront();
+            if (frontWagon != null) frontWagon.attachTail(wagon);
+            else firstWagon = wagon;
+            lastWagonOfNewGroup.attachTail(wagonAtPosition);
 
-        return true;
+            return true;
+        });
     }
 
     /**
@@ -275,24 +592,21 @@ public class Train {
      * @return whether the move could be completed successfully
      */
     public boolean moveOneWagon(int wagonId, Train toTrain) {
-        Wagon wagonToMove = findWagonById(wagonId);
-
-        // Multiple checks get done before the moving can take place:
-        if (wagonToMove == null) return false;
-        if (!toTrain.isCompatible(wagonToMove)) return false;
-        // Check if the Locomotive of toTrain can hold the Wagon.
-        if (toTrain.getEngine().getMaxWagons() < toTrain.getNumberOfWagons() + 1) return false;
+        return operation(TrainMetrics.Operation.MOVE_ONE_WAGON, () -> {
+            Wagon wagonToMove = findWagonById(wagonId);
 
-        // Sets the next of the first Wagon of this Train
-        // in the case that the first Wagon is the Wagon to be moved.
-        if (getFirstWagon() == wagonToMove)
-            setFirstWagon(wagonToMove.getNextWagon());
+            // Multiple checks get done before the moving can take place:
+            if (wagonToMove == null) return false;
+            if (!toTrain.isCompatible(wagonToMove) || toTrain.findWagonById(wagonId) != null) return false;
+            // Check if the Locomotive of toTrain can hold the Wagon.
+            if (toTrain.getEngine().getMaxWagons() < toTrain.getNumberOfWagons() + 1) return false;
 
-        // Removes the Wagon to move and attaches it to toTrain.
-        wagonToMove.removeFromSequence();
-        toTrain.attachToRear(wagonToMove);
+            // Removes the Wagon to move and attaches it to toTrain.
+            release(wagonToMove, 1);
+            wagonToMove.removeFromSequence();
 
-        return true;
+            return toTrain.attachToRear(wagonToMove);
+        });
     }
 
     /**
@@ -309,21 +623,15 @@ public class Train {
     public boolean splitAtPosition(int position, Train toTrain) {
         if (!hasWagons()) return false; // Can't split if there are no Wagons.
 
-        Wagon wagonAtPosition = findWagonAtPosition(position);
-
-        // Checks if the Wagon exists and whether the Wagon can be attached to toTrain
-        if (wagonAtPosition == null || !toTrain.canAttach(wagonAtPosition)) return false;
-
-        wagonAtPosition.detachFront();
-        // If the position is 1, it needs to detach itself from the train.
-        if (position == 1) setFirstWagon(null);
+        return operation(TrainMetrics.Operation.SPLIT_AT_POSITION, () -> {
+            Wagon wagonAtPosition = findWagonAtPosition(position);
 
-        // Attach the wagon to the correct object.
-        if (toTrain.hasWagons())
-            wagonAtPosition.reAttachTo(toTrain.getLastWagonAttached());
-        else toTrain.setFirstWagon(wagonAtPosition);
+            // Checks if the Wagon exists and whether the Wagon can be attached to toTrain
+            if (wagonAtPosition == null || toTrain == this) return false;
 
-        return true;
+            // Attaching the Wagon to toTrain takes it (and its tail) away from this train.
+            return toTrain.attachToRear(wagonAtPosition);
+        });
     }
 
     /**
@@ -334,16 +642,21 @@ public class Train {
      * (No change if the train has no wagons or only one wagon)
      */
     public void reverse() {
-        if (!hasWagons()) return; // Can't reverse if there are no Wagons.
+        if (getNumberOfWagons() < 2) return; // Nothing to reverse if there are less than two Wagons.
+
+        operation(TrainMetrics.Operation.REVERSE, () -> {
+            // Flipping the orientation swaps the next and previous wagon of every Wagon at once.
+            reversed = !reversed;
 
-        Wagon wagonToReverse = getFirstWagon();
+            Wagon formerFirstWagon = firstWagon;
+            firstWagon = lastWagon;
+            lastWagon = formerFirstWagon;
 
-        // Preparing for reversing
-        wagonToReverse.detachFront();
-        setFirstWagon(null);
+            consist = consist.reverse();
 
-        // Lets the reverse method in Wagon handle the reversing.
-        attachToRear(wagonToReverse.reverseSequence());
+            if (journal != null) journal.recordReversal(this);
+            return true;
+        });
     }
 
     /**
@@ -355,21 +668,118 @@ public class Train {
      * @return whether the attachment could be completed successfully
      */
     public boolean attachToRear(Wagon wagon) {
-        if (!canAttach(wagon) || getNumberOfWagons() == engine.getMaxWagons())
-            return false;
+        return operation(TrainMetrics.Operation.ATTACH_TO_REAR, () -> {
+            if (wagon.getTrain() == this || !canAttach(wagon) || sharesIdWith(wagon))
+                return false;
 
-        Wagon lastWagon = getLastWagonAttached();
+            // Takes the Wagon (and its tail) over from the sequence it's currently part of.
+            if (wagon.getTrain() != null) wagon.getTrain().release(wagon);
+            wagon.detachFront();
 
-        if (lastWagon == null) {
-            setFirstWagon(wagon); // The rear is the front in this case.
+            append(wagon);
             return true;
+        });
+    }
+
+    /**
+     * Tries to attach all given wagons to the rear of the train, in the order of the collection.
+     * The wagons are checked together and linked in a single pass, which is faster than attaching them one by one.
+     * No change is made if the attachment cannot be made.
+     * (when a wagon is part of a train, a wagon is not compatible with the train or the other wagons,
+     * an id is already used by a wagon of the train or the collection,
+     * or the engine has insufficient capacity for all wagons)
+     * Wagons of the collection are detached from any wagon outside of the collection that they are linked to.
+     *
+     * @param wagons the wagons to be attached
+     * @return whether the attachment could be completed successfully
+     */
+    public boolean attachAll(Collection<? extends Wagon> wagons) {
+        if (wagons.isEmpty()) return true;
+        if (getEngine().getMaxWagons() < getNumberOfWagons() + wagons.size()) return false;
+
+        WagonIndex newWagons = new WagonIndex();
+        Wagon firstNewWagon = wagons.iterator().next();
+        for (Wagon wagon : wagons) {
+            if (wagon.getTrain() != null || !isCompatible(wagon)) return false;
+            // All new wagons need to have the type of the first one, in the case the train has no wagons yet.
+            if ((wagon instanceof PassengerWagon) != (firstNewWagon instanceof PassengerWagon)
+                    || (wagon instanceof FreightWagon) != (firstNewWagon instanceof FreightWagon)) return false;
+            if (findWagonById(wagon.getId()) != null || newWagons.get(wagon.getId()) != null) return false;
+
+            newWagons.put(wagon);
         }
 
-        // Attaches the Wagon to the back.
-        wagon.detachFront();
-        lastWagon.attachTail(wagon);
+        Wagon wagon = linkLoose(wagons.toArray(new Wagon[0]));
+        return operation(TrainMetrics.Operation.ATTACH_ALL, () -> {
+            append(wagon);
+            return true;
+        });
+    }
 
-        return true;
+    /**
+     * Attaches a sequence of wagons that isn't part of any train to the rear of the train, without any checks.
+     *
+     * @param wagon the first wagon of the sequence, which has no wagon in front of it
+     */
+    private void append(Wagon wagon) {
+        // Claims the Wagon before attaching it to the back, so the claim doesn't include the current Wagons.
+        Wagon lastWagonOfNewGroup = claim(getNumberOfWagons(), wagon);
+
+        // Attaches the Wagon to the back, the rear is the front in the case there are no Wagons.
+        if (hasWagons()) lastWagon.attachTail(wagon);
+        else firstWagon = wagon;
+
+        lastWagon = lastWagonOfNewGroup;
+    }
+
+    /**
+     * Inserts a sequence of wagons that isn't part of any train at the front of the train, without any checks.
+     *
+     * @param wagon the first wagon of the sequence, which has no wagon in front of it
+     */
+    private void prepend(Wagon wagon) {
+        Wagon lastWagonOfNewGroup = claim(0, wagon);
+
+        // Connects the last Wagon of the new group in front of the first wagon connected to the train.
+        if (hasWagons()) lastWagonOfNewGroup.attachTail(getFirstWagon());
+        else lastWagon = lastWagonOfNewGroup; // In the case there are no Wagons attached, the new group is the whole train.
+
+        firstWagon = wagon;
+    }
+
+    /**
+     * Takes the given wagon and its tail over to the front or the rear of this train, without checking whether they can be attached.
+     * Used by a ShuntingPlan to apply the steps it has validated already.
+     *
+     * @param kind    the operation of the plan that is counted when TrainMetrics are enabled
+     * @param wagon   the first wagon of a sequence of wagons, which may be part of another train
+     * @param atFront whether the sequence is inserted at the front instead of attached to the rear
+     */
+    void takeOver(TrainMetrics.Operation kind, Wagon wagon, boolean atFront) {
+        operation(kind, () -> {
+            if (wagon.getTrain() != null) wagon.getTrain().release(wagon);
+            wagon.detachFront();
+
+            if (atFront) prepend(wagon);
+            else append(wagon);
+            return true;
+        });
+    }
+
+    /**
+     * Moves a single wagon of another train to the rear of this train, without checking whether it can be attached.
+     * Used by a ShuntingPlan to apply the steps it has validated already.
+     *
+     * @param wagon a wagon that is part of another train
+     */
+    void takeOverOne(Wagon wagon) {
+        operation(TrainMetrics.Operation.MOVE_ONE_WAGON, () -> {
+            wagon.getTrain().release(wagon, 1);
+            wagon.removeFromSequence();
+
+            append(wagon);
+            return true;
+        });
     }
 
     @Override
@@ -0,0 +1,373 @@
+package models;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records the changes of the trains it tracks, so the operations on these trains can be undone and redone.
+ * Every change is recorded as a sequence of wagons that has been inserted into or removed from a position of a train,
+ * or as the reversal of a train, which refer to the wagons involved instead of copying them.
+ * Undoing or redoing an operation therefore only touches the wagons the operation has moved.
+ * Snapshots of the tracked trains are taken every given number of operations,
+ * so moving far back or forth through the journal can start from the closest snapshot instead of replaying every operation.
+ * A snapshot keeps the immutable ConsistSnapshot that every train already publishes, so taking one doesn't copy any wagons.
+ * The oldest operations can be trimmed from the journal, or are trimmed automatically once it holds a maximum number of them.
+ * <p>
+ * Trains that exchange wagons should be tracked by the same journal, as the changes of an untracked train are not recorded.
+ * A loose sequence of wagons that an operation takes over is given back as a sequence of its own when that operation is undone.
+ * A journal is not thread-safe.
+ *
+ * @author HvA HBO-ICT, Irene Doodeman, Kevin Breurken
+ */
+public class TrainJournal {
+    private final int snapshotInterval;
+    private final int maxOperations;  // the number of operations kept in the journal, or 0 to keep them all
+    private final List<Train> trains = new ArrayList<>();
+    private final List<Operation> operations = new ArrayList<>();
+    private final List<Snapshot> snapshots = new ArrayList<>();
+    private int position;             // the number of operations that are currently applied to the trains
+    private int numberOfTrimmed;      // the number of operations trimmed from the front of the journal
+    private Operation currentOperation;
+    private int depth;                // the number of operations in progress, an operation may perform others
+    private boolean replaying;
+
+    /**
+     * Creates a journal that only takes snapshots when asked for.
+     */
+    public TrainJournal() {
+        this(0);
+    }
+
+    /**
+     * Creates a journal that keeps all operations.
+     *
+     * @param snapshotInterval the number of operations after which a snapshot is taken, or 0 to never take one automatically
+     */
+    public TrainJournal(int snapshotInterval) {
+        this(snapshotInterval, 0);
+    }
+
+    /**
+     * @param snapshotInterval the number of operations after which a snapshot is taken, or 0 to never take one automatically
+     * @param maxOperations    the number of operations after which the oldest operation is trimmed from the journal
+     *                         for every new one, or 0 to keep all operations
+     */
+    public TrainJournal(int snapshotInterval, int maxOperations) {
+        if (maxOperations < 0) throw new IllegalArgumentException("The maximum number of operations can't be negative");
+
+        this.snapshotInterval = snapshotInterval;
+        this.maxOperations = maxOperations;
+    }
+
+    /**
+     * Starts recording the changes of the given train.
+     * Earlier snapshots don't include the train, so these are discarded.
+     *
+     * @param train a train that isn't tracked by another journal
+     */
+    public void track(Train train) {
+        if (train.journal == this) return;
+        if (train.journal != null)
+            throw new IllegalStateException(train + " is already tracked by another journal");
+
+        train.journal = this;
+        trains.add(train);
+        snapshots.clear();
+    }
+
+    /**
+     * @return the number of operations that are currently applied to the trains,
+     * i.e. the position in the journal to which moveTo would return
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    /**
+     * @return the number of operations in the journal, including those that have been undone
+     */
+    public int getNumberOfOperations() {
+        return operations.size();
+    }
+
+    public int getNumberOfSnapshots() {
+        return snapshots.size();
+    }
+
+    public boolean canUndo() {
+        return position > 0;
+    }
+
+    public boolean canRedo() {
+        return position < operations.size();
+    }
+
+    /**
+     * Undoes the last operation that is applied to the trains.
+     *
+     * @return whether there was an operation to undo
+     */
+    public boolean undo() {
+        if (!canUndo()) return false;
+
+        replaying = true;
+        try {
+            operations.get(--position).undo();
+        } finally {
+            replaying = false;
+        }
+        return true;
+    }
+
+    /**
+     * Applies the first operation that has been undone again.
+     *
+     * @return whether there was an operation to redo
+     */
+    public boolean redo() {
+        if (!canRedo()) return false;
+
+        replaying = true;
+        try {
+            operations.get(position++).redo();
+        } finally {
+            replaying = false;
+        }
+        return true;
+    }
+
+    /**
+     * Undoes or redoes operations until the given number of operations is applied to the trains.
+     * Starts from the closest snapshot at or before the given position if that takes fewer operations.
+     *
+     * @param position the number of operations that should be applied, between 0 and the number of operations
+     */
+    public void moveTo(int position) {
+        if (position < 0 || position > operations.size())
+            throw new IndexOutOfBoundsException("There is no position " + position + " in a journal of " + operations.size() + " operations");
+
+        // The snapshots are ordered by their position.
+        Snapshot closest = null;
+        for (Snapshot snapshot : snapshots) {
+            if (snapshot.position > position) break;
+            closest = snapshot;
+        }
+        if (closest != null && position - closest.position < Math.abs(position - this.position)) restore(closest);
+
+        while (this.position > position) undo();
+        while (this.position < position) redo();
+    }
+
+    /**
+     * Forgets the oldest operations, so they can't be undone anymore, until at most the given number of operations is left.
+     * Only operations that are applied to the trains are trimmed, the operations that have been undone can still be redone.
+     * The positions in the journal, and those of the snapshots, move back by the number of trimmed operations;
+     * snapshots that were taken before the first operation that is left are discarded.
+     *
+     * @param numberOfOperations the number of operations to keep
+     * @return the number of operations that were trimmed
+     */
+    public int trim(int numberOfOperations) {
+        if (numberOfOperations < 0) throw new IllegalArgumentException("The number of operations to keep can't be negative");
+
+        int trimmed = Math.min(operations.size() - numberOfOperations, position);
+        if (trimmed <= 0) return 0;
+
+        operations.subList(0, trimmed).clear();
+        position -= trimmed;
+        numberOfTrimmed += trimmed;
+
+        // The snapshots are ordered by their position, so the discarded ones are at the front.
+        int discarded = 0;
+        while (discarded < snapshots.size() && snapshots.get(discarded).position < trimmed) discarded++;
+        snapshots.subList(0, discarded).clear();
+        for (Snapshot snapshot : snapshots) snapshot.position -= trimmed;
+
+        return trimmed;
+    }
+
+    /**
+     * Takes a snapshot of the wagons of every tracked train, which is kept by this journal for moveTo.
+     *
+     * @return the snapshot
+     */
+    public Snapshot snapshot() {
+        Snapshot snapshot = new Snapshot(this);
+
+        // Keeps the snapshots ordered by their position, a snapshot can be taken after undoing operations.
+        int index = snapshots.size();
+        while (index > 0 && snapshots.get(index - 1).position > position) index--;
+        snapshots.add(index, snapshot);
+
+        return snapshot;
+    }
+
+    /**
+     * Returns the tracked trains to the wagons they had when the given snapshot was taken.
+     * The operations recorded after the snapshot can be redone from there.
+     *
+     * @param snapshot a snapshot taken by this journal, at a position that is still part of the journal
+     */
+    public void restore(Snapshot snapshot) {
+        if (snapshot.journal != this || !snapshots.contains(snapshot))
+            throw new IllegalArgumentException("The snapshot doesn't belong to the operations of this journal");
+
+        replaying = true;
+        try {
+            // Every train lets go of its wagons first, since they may have moved to any other train.
+            for (Train train : trains) train.setWagons(new Wagon[0]);
+            for (int i = 0; i < snapshot.trains.length; i++) snapshot.trains[i].setWagons(snapshot.wagonsOf(i));
+        } finally {
+            replaying = false;
+        }
+        position = snapshot.position;
+    }
+
+    void beginOperation() {
+        if (replaying) return;
+
+        if (depth++ == 0) currentOperation = new Operation();
+    }
+
+    void endOperation() {
+        if (replaying || --depth > 0) return;
+
+        Operation operation = currentOperation;
+        currentOperation = null;
+        if (operation.changes.isEmpty()) return; // Nothing changed, the operation could not be completed.
+
+        // A new operation replaces the operations that have been undone, and the snapshots taken in between.
+        operations.subList(position, operations.size()).clear();
+        while (!snapshots.isEmpty() && snapshots.get(snapshots.size() - 1).position > position)
+            snapshots.remove(snapshots.size() - 1);
+
+        operations.add(operation);
+        position++;
+
+        if (maxOperations > 0 && operations.size() > maxOperations) trim(maxOperations);
+        // The interval counts the trimmed operations as well, so trimming doesn't shift the snapshots.
+        if (snapshotInterval > 0 && (numberOfTrimmed + position) % snapshotInterval == 0) snapshot();
+    }
+
+    /**
+     * Records that the sequence starting at the given wagon has been inserted into the given train.
+     *
+     * @param position       the position of the given wagon in the train (starting at 1)
+     * @param numberOfWagons the number of wagons in the sequence
+     */
+    void recordInsertion(Train train, int position, Wagon wagon, int numberOfWagons) {
+        record(new Change(Change.INSERTION, train, position, wagon, numberOfWagons));
+    }
+
+    /**
+     * Records that the sequence starting at the given wagon is about to be removed from the given train.
+     *
+     * @param position       the position of the given wagon in the train (starting at 1)
+     * @param numberOfWagons the number of wagons in the sequence
+     */
+    void recordRemoval(Train train, int position, Wagon wagon, int numberOfWagons) {
+        record(new Change(Change.REMOVAL, train, position, wagon, numberOfWagons));
+    }
+
+    void recordReversal(Train train) {
+        record(new Change(Change.REVERSAL, train, 0, null, 0));
+    }
+
+    private void record(Change change) {
+        if (replaying) return;
+
+        // A change that isn't part of a larger operation is an operation on its own.
+        beginOperation();
+        currentOperation.changes.add(change);
+        endOperation();
+    }
+
+    /**
+     * The wagons of the tracked trains at a position in the journal,
+     * kept as the immutable consists of the trains, which share their wagons with the trains themselves.
+     */
+    public static class Snapshot {
+        private final TrainJournal journal;
+        private int position;   // moves back when the journal is trimmed
+        private final Train[] trains;
+        private final ConsistSnapshot[] consists;
+
+        private Snapshot(TrainJournal journal) {
+            this.journal = journal;
+            this.position = journal.position;
+            this.trains = journal.trains.toArray(new Train[0]);
+            this.consists = new ConsistSnapshot[trains.length];
+
+            for (int i = 0; i < trains.length; i++) consists[i] = trains[i].getConsist();
+        }
+
+        /**
+         * @param index the index of a train of the snapshot
+         * @return the wagons of the train when the snapshot was taken, from the front to the rear
+         */
+        private Wagon[] wagonsOf(int index) {
+            Wagon[] wagons = new Wagon[consists[index].getNumberOfWagons()];
+
+            int i = 0;
+            for (Wagon wagon : consists[index]) wagons[i++] = wagon;
+            return wagons;
+        }
+
+        /**
+         * @return the number of operations that were applied to the trains when the snapshot was taken
+         */
+        public int getPosition() {
+            return position;
+        }
+    }
+
+    /**
+     * The changes made by a single operation, in the order in which they were made.
+     */
+    private static class Operation {
+        private final List<Change> changes = new ArrayList<>(2);
+
+        private void undo() {
+            for (int i = changes.size() - 1; i >= 0; i--) changes.get(i).undo();
+        }
+
+        private void redo() {
+            for (Change change : changes) change.redo();
+        }
+    }
+
+    /**
+     * A sequence of wagons inserted into or removed from a train, or the reversal of a train.
+     */
+    private static class Change {
+        private static final byte INSERTION = 0;
+        private static final byte REMOVAL = 1;
+        private static final byte REVERSAL = 2;
+
+        private final byte kind;
+        private final Train train;
+        private final int position;
+        private final Wagon wagon;
+        private final int numberOfWagons;
+
+        private Change(byte kind, Train train, int position, Wagon wagon, int numberOfWagons) {
+            this.kind = kind;
+            this.train = train;
+            this.position = position;
+            this.wagon = wagon;
+            this.numberOfWagons = numberOfWagons;
+        }
+
+        private void undo() {
+            if (kind == INSERTION) train.removeSequence(position, numberOfWagons);
+            else if (kind == REMOVAL) train.insertSequence(position, wagon, numberOfWagons);
+            else train.reverse();
+        }
+
+        private void redo() {
+            if (kind == INSERTION) train.insertSequence(position, wagon, numberOfWagons);
+            else if (kind == REMOVAL) train.removeSequence(position, numberOfWagons);
+            else train.reverse();
+        }
+    }
+}
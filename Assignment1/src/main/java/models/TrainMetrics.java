@@ -0,0 +1,188 @@
+package models;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Optional instrumentation of the public operations of trains, to find out why some shunting goes slow.
+ * While enabled, every operation counts the links between wagons it follows, the links it makes (attaches)
+ * and breaks (detaches), and the bytes its thread allocates, which includes the snapshots and the journal of the train.
+ * Everything a nested operation does, such as the attachToRear of a splitAtPosition, counts for the outermost one.
+ * When disabled, the trains and wagons only check a single static flag.
+ * Enable it before the threads that use the trains are started, so all of them see it.
+ *
+ * @author HvA HBO-ICT, Irene Doodeman, Kevin Breurken
+ */
+public final class TrainMetrics {
+    public enum Operation {
+        SET_FIRST_WAGON, INSERT_AT_FRONT, INSERT_AT_POSITION, ATTACH_TO_REAR, ATTACH_ALL, MOVE_ONE_WAGON, SPLIT_AT_POSITION, REVERSE
+    }
+
+    private static final int CALLS = 0, TRAVERSALS = 1, ATTACHES = 2, DETACHES = 3, ALLOCATED_BYTES = 4;
+
+    static boolean enabled;     // read by every operation and link of a wagon, so it is kept as cheap as possible
+
+    private static final ThreadLocal<Recorder> recorders = ThreadLocal.withInitial(Recorder::new);
+    private static final LongAdder[][] totals = new LongAdder[Operation.values().length][ALLOCATED_BYTES + 1];
+    private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    static {
+        for (LongAdder[] counters : totals) {
+            for (int counter = 0; counter < counters.length; counter++) counters[counter] = new LongAdder();
+        }
+    }
+
+    private TrainMetrics() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        TrainMetrics.enabled = enabled;
+    }
+
+    /**
+     * Sets all counters back to 0.
+     */
+    public static void reset() {
+        for (LongAdder[] counters : totals) {
+            for (LongAdder counter : counters) counter.reset();
+        }
+    }
+
+    /**
+     * @return the counters of all operations completed so far, by all threads
+     */
+    public static Snapshot snapshot() {
+        return new Snapshot();
+    }
+
+    /**
+     * Starts counting for the given operation, unless the thread is already inside another operation.
+     */
+    static void begin(Operation operation) {
+        Recorder recorder = recorders.get();
+        if (recorder.depth++ > 0) return;
+
+        recorder.operation = operation;
+        recorder.traversals = recorder.attaches = recorder.detaches = 0;
+        recorder.allocatedBytesBefore = allocatedBytes();
+    }
+
+    /**
+     * Adds the counts of the operation to the totals, once the outermost operation of the thread is done.
+     */
+    static void end() {
+        Recorder recorder = recorders.get();
+        if (--recorder.depth > 0) return;
+
+        LongAdder[] counters = totals[recorder.operation.ordinal()];
+        counters[CALLS].increment();
+        counters[TRAVERSALS].add(recorder.traversals);
+        counters[ATTACHES].add(recorder.attaches);
+        counters[DETACHES].add(recorder.detaches);
+        if (recorder.allocatedBytesBefore >= 0) counters[ALLOCATED_BYTES].add(allocatedBytes() - recorder.allocatedBytesBefore);
+    }
+
+    static void countTraversal() {
+        recorders.get().traversals++;
+    }
+
+    static void countAttach() {
+        recorders.get().attaches++;
+    }
+
+    static void countDetach() {
+        recorders.get().detaches++;
+    }
+
+    /**
+     * @return the number of bytes allocated by the current thread, or -1 if the JVM doesn't keep track of it
+     */
+    private static long allocatedBytes() {
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) return -1;
+
+        return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * The counts of the operation a thread is performing.
+     * Links followed outside of an operation are counted as well, but are dropped when the next operation begins.
+     */
+    private static class Recorder {
+        private int depth;
+        private Operation operation;
+        private long traversals, attaches, detaches;
+        private long allocatedBytesBefore;
+    }
+
+    /**
+     * The counters of every operation at one moment.
+     */
+    public static class Snapshot {
+        private final Map<Operation, long[]> counters = new EnumMap<>(Operation.class);
+
+        private Snapshot() {
+            for (Operation operation : Operation.values()) {
+                long[] values = new long[ALLOCATED_BYTES + 1];
+                for (int counter = 0; counter < values.length; counter++)
+                    values[counter] = totals[operation.ordinal()][counter].sum();
+
+                counters.put(operation, values);
+            }
+        }
+
+        public long getCalls(Operation operation) {
+            return counters.get(operation)[CALLS];
+        }
+
+        /**
+         * @return the number of times a next or previous wagon has been asked for
+         */
+        public long getLinkTraversals(Operation operation) {
+            return counters.get(operation)[TRAVERSALS];
+        }
+
+        /**
+         * @return the number of links made between wagons
+         */
+        public long getAttaches(Operation operation) {
+            return counters.get(operation)[ATTACHES];
+        }
+
+        /**
+         * @return the number of links broken between wagons
+         */
+        public long getDetaches(Operation operation) {
+            return counters.get(operation)[DETACHES];
+        }
+
+        /**
+         * @return the number of bytes allocated, or 0 if the JVM doesn't keep track of it
+         */
+        public long getAllocatedBytes(Operation operation) {
+            return counters.get(operation)[ALLOCATED_BYTES];
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(String.format("%-20s %10s %14s %10s %10s %14s%n",
+                    "operation", "calls", "traversals", "attaches", "detaches", "bytes"));
+
+            for (Operation operation : Operation.values()) {
+                long calls = getCalls(operation);
+                if (calls == 0) continue;
+
+                sb.append(String.format("%-20s %10d %14d %10d %10d %14d%n", operation, calls, getLinkTraversals(operation),
+                        getAttaches(operation), getDetaches(operation), getAllocatedBytes(operation)));
+            }
+
+            return sb.toString();
+        }
+    }
+}
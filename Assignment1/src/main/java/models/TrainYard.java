@@ -0,0 +1,512 @@
+package models;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Stores a large number of wagons in parallel arrays of primitives instead of separate Wagon objects.
+ * A wagon is identified by its slot in the arrays, and the sequences of wagons are linked by slot numbers.
+ * Every slot takes 21 bytes and the hash table that finds the slot of a wagon id takes 6 to 11 bytes per wagon,
+ * so a million wagons take about 30 bytes each, where a Wagon object alone takes 56 bytes.
+ * The wagons of the yard are arranged in Consists, which offer the same operations as a Train on wagon ids.
+ * A consist has an orientation that is flipped to reverse it, its slots store their links in that orientation,
+ * like the wagons of a Train. There is no index by position: a wagon is found by walking from the nearest end.
+ * A Consist is not a view of Wagon objects: they are only copied out when asked for, or when a consist is converted to a Train.
+ *
+ * @author HvA HBO-ICT, Irene Doodeman, Kevin Breurken
+ */
+public class TrainYard {
+    private static final byte PASSENGER_WAGON = 1;
+    private static final byte FREIGHT_WAGON = 2;
+    private static final int NONE = -1;            // the slot number of a missing wagon
+    private static final int INITIAL_CAPACITY = 16;
+
+    // The properties of the wagon in every slot.
+    private int[] wagonIds = new int[INITIAL_CAPACITY];
+    private byte[] wagonTypes = new byte[INITIAL_CAPACITY];
+    private int[] capacities = new int[INITIAL_CAPACITY];     // the number of seats or the maximum weight
+    private int[] nextSlots = new int[INITIAL_CAPACITY];      // stored in the orientation of the consist of the wagon
+    private int[] previousSlots = new int[INITIAL_CAPACITY];  // stored in the orientation of the consist of the wagon
+    private int[] consistNumbers = new int[INITIAL_CAPACITY]; // the index of the consist of the wagon plus one, 0 if none
+    private int numberOfWagons;
+
+    // Open addressing hash table from wagon ids to slots, the yard never removes wagons.
+    private int[] slotsById = newSlotTable(2 * INITIAL_CAPACITY);
+
+    private final List<Consist> consists = new ArrayList<>();
+
+    /**
+     * Adds a passenger wagon to the yard, it isn't part of any consist yet.
+     *
+     * @param wagonId
+     * @param numberOfSeats
+     * @return whether the wagon was added (false if the yard already has a wagon with the given id)
+     */
+    public boolean addPassengerWagon(int wagonId, int numberOfSeats) {
+        return addWagon(wagonId, PASSENGER_WAGON, numberOfSeats);
+    }
+
+    /**
+     * Adds a freight wagon to the yard, it isn't part of any consist yet.
+     *
+     * @param wagonId
+     * @param maxWeight
+     * @return whether the wagon was added (false if the yard already has a wagon with the given id)
+     */
+    public boolean addFreightWagon(int wagonId, int maxWeight) {
+        return addWagon(wagonId, FREIGHT_WAGON, maxWeight);
+    }
+
+    /**
+     * Adds an empty consist to the yard, pulled by the given locomotive.
+     *
+     * @param engine
+     * @param origin
+     * @param destination
+     * @return the new consist
+     */
+    public Consist addConsist(Locomotive engine, String origin, String destination) {
+        Consist consist = new Consist(consists.size() + 1, engine, origin, destination);
+        consists.add(consist);
+        return consist;
+    }
+
+    public int getNumberOfWagons() {
+        return numberOfWagons;
+    }
+
+    /**
+     * @param wagonId
+     * @return whether the yard has a wagon with the given id that isn't part of any consist
+     */
+    public boolean isAvailable(int wagonId) {
+        int slot = slotOf(wagonId);
+        return slot != NONE && consistNumbers[slot] == 0;
+    }
+
+    private boolean addWagon(int wagonId, byte wagonType, int capacity) {
+        if (slotOf(wagonId) != NONE) return false;
+
+        if (numberOfWagons == wagonIds.length) grow();
+
+        int slot = numberOfWagons++;
+        wagonIds[slot] = wagonId;
+        wagonTypes[slot] = wagonType;
+        capacities[slot] = capacity;
+        nextSlots[slot] = NONE;
+        previousSlots[slot] = NONE;
+        consistNumbers[slot] = 0;
+
+        // Keeps the hash table at most three quarters full.
+        if (4 * numberOfWagons > 3 * slotsById.length) rehash(2 * slotsById.length);
+        putSlot(slot);
+
+        return true;
+    }
+
+    private void grow() {
+        int capacity = 2 * wagonIds.length;
+
+        wagonIds = Arrays.copyOf(wagonIds, capacity);
+        wagonTypes = Arrays.copyOf(wagonTypes, capacity);
+        capacities = Arrays.copyOf(capacities, capacity);
+        nextSlots = Arrays.copyOf(nextSlots, capacity);
+        previousSlots = Arrays.copyOf(previousSlots, capacity);
+        consistNumbers = Arrays.copyOf(consistNumbers, capacity);
+    }
+
+    /**
+     * @return the number of bytes of the arrays that store the wagons of the yard, without their headers
+     */
+    long getFootprint() {
+        long bytesPerSlot = 5 * Integer.BYTES + Byte.BYTES;
+        return bytesPerSlot * wagonIds.length + (long) Integer.BYTES * slotsById.length;
+    }
+
+    /**
+     * @param wagonId
+     * @return the slot of the wagon with the given id, or NONE if the yard doesn't have such a wagon
+     */
+    private int slotOf(int wagonId) {
+        for (int i = hashOf(wagonId); slotsById[i] != NONE; i = (i + 1) & (slotsById.length - 1)) {
+            if (wagonIds[slotsById[i]] == wagonId) return slotsById[i];
+        }
+
+        return NONE;
+    }
+
+    private void putSlot(int slot) {
+        int i = hashOf(wagonIds[slot]);
+        while (slotsById[i] != NONE) i = (i + 1) & (slotsById.length - 1);
+
+        slotsById[i] = slot;
+    }
+
+    private void rehash(int capacity) {
+        slotsById = newSlotTable(capacity);
+        for (int slot = 0; slot < numberOfWagons; slot++) putSlot(slot);
+    }
+
+    private int hashOf(int wagonId) {
+        // Spreads consecutive ids over the table by multiplying with the golden ratio.
+        int hash = wagonId * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & (slotsById.length - 1);
+    }
+
+    private static int[] newSlotTable(int capacity) {
+        int[] table = new int[capacity];
+        Arrays.fill(table, NONE);
+        return table;
+    }
+
+    /**
+     * Swaps the stored next and previous links of the given slot.
+     */
+    private void swapLinks(int slot) {
+        int nextSlot = nextSlots[slot];
+        nextSlots[slot] = previousSlots[slot];
+        previousSlots[slot] = nextSlot;
+    }
+
+    /**
+     * Creates a new Wagon object with the properties of the wagon in the given slot.
+     * The Wagon is not linked to any other wagon.
+     */
+    private Wagon createWagon(int slot) {
+        if (slot == NONE) return null;
+
+        return wagonTypes[slot] == PASSENGER_WAGON
+                ? new PassengerWagon(wagonIds[slot], capacities[slot])
+                : new FreightWagon(wagonIds[slot], capacities[slot]);
+    }
+
+    /**
+     * A sequence of wagons of the yard pulled by a Locomotive, with the same operations as a Train.
+     * Wagons are passed and queried by their id. The copy methods return a new Wagon object on every call,
+     * which isn't linked to any other wagon and doesn't follow the consist.
+     */
+    public class Consist {
+        private final int consistNumber;
+        private final Locomotive engine;
+        private final String origin;
+        private final String destination;
+        private int firstSlot = NONE;
+        private int lastSlot = NONE;
+        private int numberOfWagons;
+        private int totalCapacity;  // the total number of seats or total maximum weight of the wagons
+        private boolean reversed;   // whether the slots of this consist store their links in reverse order
+
+        private Consist(int consistNumber, Locomotive engine, String origin, String destination) {
+            this.consistNumber = consistNumber;
+            this.engine = engine;
+            this.origin = origin;
+            this.destination = destination;
+        }
+
+        public boolean hasWagons() {
+            return firstSlot != NONE;
+        }
+
+        public boolean isPassengerTrain() {
+            return hasWagons() && wagonTypes[firstSlot] == PASSENGER_WAGON;
+        }
+
+        public boolean isFreightTrain() {
+            return hasWagons() && wagonTypes[firstSlot] == FREIGHT_WAGON;
+        }
+
+        public Locomotive getEngine() {
+            return engine;
+        }
+
+        public int getNumberOfWagons() {
+            return numberOfWagons;
+        }
+
+        public int getTotalNumberOfSeats() {
+            return isPassengerTrain() ? totalCapacity : 0;
+        }
+
+        public int getTotalMaxWeight() {
+            return isFreightTrain() ? totalCapacity : 0;
+        }
+
+        /**
+         * @param position the position of a wagon of this consist (starting at 1 for the first wagon)
+         * @return the id of the wagon at the given position
+         * @throws IndexOutOfBoundsException if the position is not valid for this consist
+         */
+        public int getWagonIdAtPosition(int position) {
+            int slot = slotAtPosition(position);
+            if (slot == NONE) throw new IndexOutOfBoundsException("No position " + position + " in " + numberOfWagons + " wagons");
+
+            return wagonIds[slot];
+        }
+
+        /**
+         * @param wagonId
+         * @return the position of the wagon with the given id (starting at 1), or 0 if it isn't part of this consist
+         */
+        public int getPositionOfWagon(int wagonId) {
+            int slot = slotOf(wagonId);
+            return slot != NONE && consistNumbers[slot] == consistNumber ? positionOf(slot) : 0;
+        }
+
+        /**
+         * @param position
+         * @return a new copy of the wagon at the given position (starting at 1 for the first wagon of the consist)
+         * (return null if the position is not valid for this consist)
+         */
+        public Wagon copyWagonAtPosition(int position) {
+            return createWagon(slotAtPosition(position));
+        }
+
+        /**
+         * @param wagonId
+         * @return a new copy of the wagon with the given wagonId
+         * (return null if no wagon of this consist has the given wagonId)
+         */
+        public Wagon copyWagonById(int wagonId) {
+            int slot = slotOf(wagonId);
+            return slot != NONE && consistNumbers[slot] == consistNumber ? createWagon(slot) : null;
+        }
+
+        /**
+         * Tries to attach an available wagon of the yard to the rear of this consist.
+         *
+         * @param wagonId the id of a wagon that isn't part of any consist
+         * @return whether the attachment could be completed successfully
+         */
+        public boolean attachToRear(int wagonId) {
+            int slot = slotOf(wagonId);
+            if (slot == NONE || consistNumbers[slot] != 0 || !canAttach(slot, 1)) return false;
+
+            linkAtRear(slot, slot, 1);
+            return true;
+        }
+
+        /**
+         * Tries to insert an available wagon of the yard at the front of this consist.
+         *
+         * @param wagonId the id of a wagon that isn't part of any consist
+         * @return whether the insertion could be completed successfully
+         */
+        public boolean insertAtFront(int wagonId) {
+            int slot = slotOf(wagonId);
+            if (slot == NONE || consistNumbers[slot] != 0 || !canAttach(slot, 1)) return false;
+
+            claim(slot);
+            setNext(slot, firstSlot);
+            setPrevious(slot, NONE);
+            if (hasWagons()) setPrevious(firstSlot, slot);
+            else lastSlot = slot;
+            firstSlot = slot;
+
+            return true;
+        }
+
+        /**
+         * Tries to remove one wagon with the given wagonId from this consist
+         * and attach it at the rear of the given toConsist.
+         *
+         * @param wagonId
+         * @param toConsist
+         * @return whether the move could be completed successfully
+         */
+        public boolean moveOneWagon(int wagonId, Consist toConsist) {
+            int slot = slotOf(wagonId);
+            if (slot == NONE || consistNumbers[slot] != consistNumber || !toConsist.canAttach(slot, 1)) return false;
+
+            // Removes the wagon from this consist by connecting its neighbours.
+            int previousSlot = previous(slot);
+            int nextSlot = next(slot);
+            if (previousSlot != NONE) setNext(previousSlot, nextSlot);
+            else firstSlot = nextSlot;
+            if (nextSlot != NONE) setPrevious(nextSlot, previousSlot);
+            else lastSlot = previousSlot;
+
+            release(slot);
+            toConsist.linkAtRear(slot, slot, 1);
+            return true;
+        }
+
+        /**
+         * Tries to split this consist before the given position and move the complete sequence
+         * of wagons from the given position to the rear of toConsist.
+         *
+         * @param position
+         * @param toConsist
+         * @return whether the move could be completed successfully
+         */
+        public boolean splitAtPosition(int position, Consist toConsist) {
+            int slot = slotAtPosition(position);
+            int numberOfMovedWagons = numberOfWagons - position + 1;
+            if (slot == NONE || toConsist == this || !toConsist.canAttach(slot, numberOfMovedWagons)) return false;
+
+            int movedLastSlot = lastSlot;
+
+            // Cuts the sequence in front of the wagon at the position.
+            lastSlot = previous(slot);
+            if (lastSlot != NONE) setNext(lastSlot, NONE);
+            else firstSlot = NONE;
+
+            // The moved slots are released one by one, which stores their links in the original orientation again.
+            for (int movedSlot = slot; movedSlot != NONE; ) {
+                int nextSlot = next(movedSlot);
+                release(movedSlot);
+                movedSlot = nextSlot;
+            }
+
+            toConsist.linkAtRear(slot, movedLastSlot, numberOfMovedWagons);
+            return true;
+        }
+
+        /**
+         * Reverses the sequence of wagons in this consist (if any).
+         */
+        public void reverse() {
+            // Flipping the orientation swaps the next and previous slot of every wagon at once.
+            reversed = !reversed;
+
+            int formerFirstSlot = firstSlot;
+            firstSlot = lastSlot;
+            lastSlot = formerFirstSlot;
+        }
+
+        /**
+         * Creates a Train with new Wagon objects for all wagons of this consist.
+         * The consist itself is left unchanged.
+         *
+         * @return the created train
+         */
+        public Train toTrain() {
+            Wagon[] wagons = new Wagon[numberOfWagons];
+            int index = 0;
+            for (int slot = firstSlot; slot != NONE; slot = next(slot)) wagons[index++] = createWagon(slot);
+
+            // The consist follows the rules of Train already, so the wagons are linked in a single pass without checks.
+            Train train = new Train(engine, origin, destination);
+            train.setWagons(wagons);
+            return train;
+        }
+
+        /**
+         * Verifies the type of the wagon in the given slot and the capacity of the engine, like Train.canAttach.
+         */
+        private boolean canAttach(int slot, int numberOfNewWagons) {
+            if (hasWagons() && wagonTypes[slot] != wagonTypes[firstSlot]) return false;
+
+            return engine.getMaxWagons() >= numberOfWagons + numberOfNewWagons;
+        }
+
+        private int next(int slot) {
+            return reversed ? previousSlots[slot] : nextSlots[slot];
+        }
+
+        private int previous(int slot) {
+            return reversed ? nextSlots[slot] : previousSlots[slot];
+        }
+
+        private void setNext(int slot, int nextSlot) {
+            if (reversed) previousSlots[slot] = nextSlot;
+            else nextSlots[slot] = nextSlot;
+        }
+
+        private void setPrevious(int slot, int previousSlot) {
+            if (reversed) nextSlots[slot] = previousSlot;
+            else previousSlots[slot] = previousSlot;
+        }
+
+        /**
+         * Walks from the nearest end of this consist to the given position.
+         */
+        private int slotAtPosition(int position) {
+            if (position < 1 || position > numberOfWagons) return NONE;
+
+            int slot;
+            if (2 * position <= numberOfWagons) {
+                slot = firstSlot;
+                for (int i = 1; i < position; i++) slot = next(slot);
+            } else {
+                slot = lastSlot;
+                for (int i = numberOfWagons; i > position; i--) slot = previous(slot);
+            }
+            return slot;
+        }
+
+        /**
+         * Walks towards both ends of this consist at the same time, the position follows from the end that is reached first.
+         *
+         * @param slot a slot of this consist
+         * @return the position of the slot (starting at 1)
+         */
+        private int positionOf(int slot) {
+            int frontSlot = slot;
+            int rearSlot = slot;
+            for (int steps = 0; ; steps++) {
+                if (frontSlot == firstSlot) return steps + 1;
+                if (rearSlot == lastSlot) return numberOfWagons - steps;
+
+                frontSlot = previous(frontSlot);
+                rearSlot = next(rearSlot);
+            }
+        }
+
+        /**
+         * Links the sequence from the first to the last given slot behind the last wagon of this consist.
+         * The slots aren't part of any consist, so their links are stored in the original orientation.
+         */
+        private void linkAtRear(int first, int last, int numberOfNewWagons) {
+            for (int slot = first; numberOfNewWagons-- > 0; ) {
+                int nextSlot = nextSlots[slot];
+                claim(slot);
+                slot = nextSlot;
+            }
+
+            setPrevious(first, lastSlot);
+            if (hasWagons()) setNext(lastSlot, first);
+            else firstSlot = first;
+            lastSlot = last;
+            setNext(last, NONE);
+        }
+
+        /**
+         * Makes the slot part of this consist, storing its links in the orientation of this consist.
+         */
+        private void claim(int slot) {
+            consistNumbers[slot] = consistNumber;
+            totalCapacity += capacities[slot];
+            numberOfWagons++;
+            if (reversed) swapLinks(slot);
+        }
+
+        /**
+         * Lets go of the slot, storing its links in the original orientation.
+         * An empty consist starts over in its original orientation.
+         */
+        private void release(int slot) {
+            consistNumbers[slot] = 0;
+            totalCapacity -= capacities[slot];
+            numberOfWagons--;
+            if (reversed) swapLinks(slot);
+            if (numberOfWagons == 0) reversed = false;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+
+            sb.append(engine);
+
+            // Print each wagon of this consist.
+            for (int slot = firstSlot; slot != NONE; slot = next(slot)) {
+                sb.append(String.format("[Wagon-%d]", wagonIds[slot]));
+            }
+
+            sb.append(String.format(" with %d wagons from %s to %s", numberOfWagons, origin, destination));
+
+            return sb.toString();
+        }
+    }
+}
@@ -1,18 +1,23 @@
 package models;
 
-import java.util.Objects;
-
 /**
  * Parent class for Freight- and PassengerWagons.
  * A Wagon can be attached to a sequence of other wagons (or one) and a Locomotive.
  * Can be part of a train.
+ * The next and previous links are stored in the orientation of the train that the wagon is part of,
+ * so a train can be reversed by flipping its orientation instead of relinking all of its wagons.
  *
  * @author HvA HBO-ICT, Irene Doodeman, Kevin Breurken
  */
 public abstract class Wagon {
     protected int id;
-    private Wagon nextWagon;
-    private Wagon previousWagon;
+    private Wagon nextWagon;        // stored in the orientation of the train of this wagon, see getNextWagon()
+    private Wagon previousWagon;    // stored in the orientation of the train of this wagon, see getPreviousWagon()
+    private Train train;            // the train that keeps track of this wagon, or null if it isn't part of any train
+
+    // Links and bookkeeping of the WagonTree that orders the wagons of a train by their position.
+    Wagon treeLeft, treeRight, treeParent;
+    int treeSize, treePriority;
 
     public Wagon(int wagonId) {
         this.id = wagonId;
@@ -23,33 +28,71 @@ public abstract class Wagon {
     }
 
     public Wagon getNextWagon() {
-        return nextWagon;
+        if (TrainMetrics.enabled) TrainMetrics.countTraversal();
+        return isReversed() ? previousWagon : nextWagon;
     }
 
     public void setNextWagon(Wagon nextWagon) {
-        this.nextWagon = nextWagon;
+        if (isReversed()) this.previousWagon = nextWagon;
+        else this.nextWagon = nextWagon;
     }
 
     public Wagon getPreviousWagon() {
-        return previousWagon;
+        if (TrainMetrics.enabled) TrainMetrics.countTraversal();
+        return isReversed() ? nextWagon : previousWagon;
     }
 
     public void setPreviousWagon(Wagon previousWagon) {
-        this.previousWagon = previousWagon;
+        if (isReversed()) this.nextWagon = previousWagon;
+        else this.previousWagon = previousWagon;
     }
 
     /**
      * @return whether this wagon has a wagon appended at the tail
      */
     public boolean hasNextWagon() {
-        return nextWagon != null;
+        return (isReversed() ? previousWagon : nextWagon) != null;
     }
 
     /**
      * @return whether this wagon has a wagon prepended at the front
      */
     public boolean hasPreviousWagon() {
-        return previousWagon != null;
+        return (isReversed() ? nextWagon : previousWagon) != null;
+    }
+
+    Train getTrain() {
+        return train;
+    }
+
+    /**
+     * Makes the given train the owner of this wagon.
+     * The stored links are swapped when the orientation of the new owner differs from the former one,
+     * so the next and previous wagon stay the same.
+     *
+     * @param train the new owner of this wagon, or null if it isn't part of any train anymore
+     */
+    void setTrain(Train train) {
+        boolean wasReversed = isReversed();
+        this.train = train;
+
+        if (wasReversed != isReversed()) swapLinks();
+    }
+
+    /**
+     * @return whether the links of this wagon are stored in the reversed orientation of its train
+     */
+    private boolean isReversed() {
+        return train != null && train.isReversed();
+    }
+
+    /**
+     * Swaps the stored next and previous links of this wagon.
+     */
+    private void swapLinks() {
+        Wagon wagon = nextWagon;
+        nextWagon = previousWagon;
+        previousWagon = wagon;
     }
 
     /**
@@ -58,6 +101,9 @@ public abstract class Wagon {
      * @return the wagon
      */
     public Wagon getLastWagonAttached() {
+        // A train already knows its last wagon.
+        if (train != null) return train.getLastWagonAttached();
+
         // Cycle through each nextWagon to find the last.
         Wagon lastwagon = this;
         while (lastwagon.hasNextWagon()) {
@@ -71,6 +117,9 @@ public abstract class Wagon {
      * excluding this wagon itself.
      */
     public int getTailLength() {
+        // A train knows how many wagons there are behind the position of this wagon.
+        if (train != null) return train.getNumberOfWagons() - train.positionOf(this);
+
         int amountOfWagons = 0;
         Wagon currentWagon = this;
 
@@ -115,6 +164,7 @@ public abstract class Wagon {
             Wagon tailWagon = getNextWagon();
 
             // Removes the link between this Wagon and it's tail.
+            if (TrainMetrics.enabled) TrainMetrics.countDetach();
             setNextWagon(null);
             tailWagon.detachFront();
 
@@ -154,26 +204,52 @@ public abstract class Wagon {
      * and the <code>front</code> wagon from its current tail.
      *
      * @param front the wagon to which this wagon must be attached to.
+     * @throws IllegalStateException if front is this wagon or part of its tail, which would create a cycle.
      */
     public void reAttachTo(Wagon front) {
         // Check if the wagon already exists in the wagon sequences it needs to be attached to.
-        Wagon lastWagon = this;
-        while (lastWagon.hasNextWagon()) {
-            // Checks if the Wagon is in front.
-            if (lastWagon.toString().equals(front.toString()))
-                System.err.println("Can't attach wagon to child wagon.");
-            // Continues through the sequences to check the next Wagon
-            lastWagon = lastWagon.getNextWagon();
-        }
+        if (hasInTail(front))
+            throw new IllegalStateException(this + " : " + front + " can't attach wagon to a wagon of its own tail!");
 
         // Detaches any existing connections that will be rearranged.
         detachFront();
+        front.detachTail();
 
         // Attaches this wagon to its new predecessor front.
+        if (TrainMetrics.enabled) TrainMetrics.countAttach();
         front.setNextWagon(this);
         setPreviousWagon(front);
     }
 
+    /**
+     * Checks whether the given wagon is this wagon or part of the tail of this wagon, without allocating.
+     * The wagons of a train are all part of the same sequence and are ordered by their position,
+     * so for those the check compares two positions in logarithmic time.
+     * A loose sequence has no order to compare, as it can be split and joined at any wagon, so the check walks
+     * the tail of this wagon and the wagons in front of the given wagon at the same time. It stops at the end
+     * of the shorter walk, so attaching a single wagon or a short sequence takes constant time,
+     * however long the other sequence is.
+     *
+     * @param wagon
+     * @return whether the given wagon is this wagon or one of its successors
+     */
+    private boolean hasInTail(Wagon wagon) {
+        if (train != null || wagon.train != null)
+            return train == wagon.train && train.positionOf(wagon) >= train.positionOf(this);
+
+        // Walks the tail of this wagon and back from the given wagon at the same time, until either finds the other.
+        Wagon successor = this;
+        Wagon predecessor = wagon;
+        while (successor != null && predecessor != null) {
+            if (successor == wagon || predecessor == this) return true;
+
+            successor = successor.getNextWagon();
+            predecessor = predecessor.getPreviousWagon();
+        }
+
+        return false;
+    }
+
     /**
      * Removes this wagon from the sequence that it is part of,
      * and reconnects its tail to the wagon in front of it, if it exists.
@@ -196,31 +272,23 @@ public abstract class Wagon {
      * Reverses the order in the sequence of wagons from this Wagon until its final successor.
      * The reversed sequence is attached again to the wagon in front of this Wagon, if any.
      * No action if this Wagon has no succeeding next wagon attached.
+     * A whole train is reversed by Train.reverse() instead, which doesn't need to visit its wagons.
      *
      * @return the new start Wagon of the reversed sequence (with is the former last Wagon of the original sequence)
      */
     public Wagon reverseSequence() {
         Wagon previousWagonOnStart = detachFront();
-        Wagon lastBeforeReverse = getLastWagonAttached(); // Will be the first wagon at the end.
-
-        Wagon anchorWagon = this; // Current Wagon during the reverse process.
-        Wagon lastWagonPutToFront = null; // Keeps a record of the last wagon we put to the front.
-
-        while (anchorWagon.hasNextWagon()) {
-            // Gets the Wagon to move
-            Wagon wagonToPutToFront = anchorWagon.getNextWagon();
-            // Detaches it from the sequences
-            wagonToPutToFront.removeFromSequence();
-
-            // Puts the detaches Wagon in front of the current anchor.
-            wagonToPutToFront.attachTail(Objects.requireNonNullElse(lastWagonPutToFront, anchorWagon));
+        Wagon lastBeforeReverse = this; // Will be the first wagon at the end.
 
-            lastWagonPutToFront = wagonToPutToFront;
+        // Swaps the links of every Wagon in a single pass, the former next wagon is the previous wagon afterwards.
+        for (Wagon wagon = this; wagon != null; wagon = wagon.getPreviousWagon()) {
+            wagon.swapLinks();
+            lastBeforeReverse = wagon;
         }
 
         // Attach it back to the starts previous wagon if it exists.
-        if (previousWagonOnStart != null && lastWagonPutToFront != null)
-            lastWagonPutToFront.reAttachTo(previousWagonOnStart);
+        if (previousWagonOnStart != null)
+            lastBeforeReverse.reAttachTo(previousWagonOnStart);
 
         return lastBeforeReverse;
     }
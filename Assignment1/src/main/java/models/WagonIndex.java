@@ -0,0 +1,128 @@
+package models;
+
+/**
+ * Hash table from wagon ids to Wagons, used by a Train to find its wagons by id without walking its sequence.
+ * Uses open addressing with linear probing on plain int keys, so looking up an id doesn't box it.
+ *
+ * @author HvA HBO-ICT, Irene Doodeman, Kevin Breurken
+ */
+class WagonIndex {
+    private static final int INITIAL_CAPACITY = 16; // Must be a power of two.
+
+    private int[] ids;
+    private Wagon[] wagons; // A slot is empty when it holds no wagon.
+    private int size;
+
+    WagonIndex() {
+        clear();
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @param wagonId
+     * @return the wagon with the given id, or null if no such wagon has been put in the index
+     */
+    Wagon get(int wagonId) {
+        for (int slot = slotOf(wagonId); wagons[slot] != null; slot = nextSlot(slot)) {
+            if (ids[slot] == wagonId) return wagons[slot];
+        }
+
+        return null;
+    }
+
+    /**
+     * Puts the wagon in the index.
+     * No action if the wagon is in the index already.
+     *
+     * @param wagon
+     * @throws IllegalStateException if another wagon with the same id is in the index
+     */
+    void put(Wagon wagon) {
+        // Keeps the table at most half full so the probe sequences stay short.
+        if (2 * (size + 1) > wagons.length) resize(2 * wagons.length);
+
+        int slot = slotOf(wagon.getId());
+        while (wagons[slot] != null) {
+            if (ids[slot] == wagon.getId()) {
+                if (wagons[slot] == wagon) return;
+                throw new IllegalStateException("Another wagon has id " + wagon.getId());
+            }
+            slot = nextSlot(slot);
+        }
+
+        ids[slot] = wagon.getId();
+        wagons[slot] = wagon;
+        size++;
+    }
+
+    /**
+     * Removes the given wagon from the index.
+     * No action if another wagon (or none) is indexed by the id of the given wagon.
+     *
+     * @param wagon
+     */
+    void remove(Wagon wagon) {
+        int slot = slotOf(wagon.getId());
+        while (wagons[slot] != wagon) {
+            if (wagons[slot] == null) return;
+            slot = nextSlot(slot);
+        }
+
+        wagons[slot] = null;
+        size--;
+
+        // Moves the entries after the emptied slot back, so no probe sequence gets interrupted by the gap.
+        int gap = slot;
+        for (slot = nextSlot(slot); wagons[slot] != null; slot = nextSlot(slot)) {
+            int home = slotOf(ids[slot]);
+
+            // The entry may only fill the gap if its home slot is not cyclically in between the gap and the entry.
+            if (((slot - home) & (wagons.length - 1)) >= ((slot - gap) & (wagons.length - 1))) {
+                ids[gap] = ids[slot];
+                wagons[gap] = wagons[slot];
+                wagons[slot] = null;
+                gap = slot;
+            }
+        }
+    }
+
+    /**
+     * Removes all wagons from the index and gives back the memory of a large table.
+     */
+    void clear() {
+        ids = new int[INITIAL_CAPACITY];
+        wagons = new Wagon[INITIAL_CAPACITY];
+        size = 0;
+    }
+
+    private void resize(int capacity) {
+        int[] oldIds = ids;
+        Wagon[] oldWagons = wagons;
+
+        ids = new int[capacity];
+        wagons = new Wagon[capacity];
+
+        for (int i = 0; i < oldWagons.length; i++) {
+            if (oldWagons[i] == null) continue;
+
+            int slot = slotOf(oldIds[i]);
+            while (wagons[slot] != null) slot = nextSlot(slot);
+
+            ids[slot] = oldIds[i];
+            wagons[slot] = oldWagons[i];
+        }
+    }
+
+    private int slotOf(int wagonId) {
+        // Spreads consecutive ids over the table by multiplying with the golden ratio.
+        int hash = wagonId * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & (wagons.length - 1);
+    }
+
+    private int nextSlot(int slot) {
+        return (slot + 1) & (wagons.length - 1);
+    }
+}
@@ -0,0 +1,187 @@
+package models;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Keeps the wagons of a Train in a balanced tree ordered by their position in the train (an implicit treap),
+ * following the orientation in which the wagons store their links,
+ * so a wagon can be found at, inserted at or split off from a position without walking the sequence.
+ * The tree is threaded through the tree fields of the wagons themselves,
+ * the next and previous links of the wagons are left untouched.
+ *
+ * @author HvA HBO-ICT, Irene Doodeman, Kevin Breurken
+ */
+class WagonTree {
+    private Wagon root;
+
+    int size() {
+        return sizeOf(root);
+    }
+
+    /**
+     * @param position the position of the wagon in the tree (starting at 1)
+     * @return the wagon at the given position, or null if the position is not valid for this tree
+     */
+    Wagon get(int position) {
+        if (position < 1 || position > size()) return null;
+
+        Wagon node = root;
+        while (true) {
+            int leftSize = sizeOf(node.treeLeft);
+
+            if (position <= leftSize) node = node.treeLeft;
+            else if (position == leftSize + 1) return node;
+            else {
+                position -= leftSize + 1;
+                node = node.treeRight;
+            }
+        }
+    }
+
+    /**
+     * @param wagon a wagon in this tree
+     * @return the position of the wagon in the tree (starting at 1)
+     */
+    int positionOf(Wagon wagon) {
+        int position = sizeOf(wagon.treeLeft) + 1;
+
+        // Walks up to the root, adding the wagons to the left of every node that has been left behind.
+        for (Wagon node = wagon; node.treeParent != null; node = node.treeParent) {
+            if (node == node.treeParent.treeRight)
+                position += sizeOf(node.treeParent.treeLeft) + 1;
+        }
+
+        return position;
+    }
+
+    /**
+     * Inserts the sequence starting at the given wagon into the tree.
+     *
+     * @param position  the number of wagons in the tree that will be in front of the inserted sequence
+     * @param wagon     the first wagon to insert of a sequence of wagons that is not part of any tree
+     * @param backwards whether the sequence is inserted by following the previous wagons instead of the next wagons
+     */
+    void insert(int position, Wagon wagon, boolean backwards) {
+        Wagon[] parts = split(root, position);
+        root = merge(merge(parts[0], build(wagon, backwards)), parts[1]);
+        root.treeParent = null;
+    }
+
+    /**
+     * Removes a range of consecutive wagons from the tree.
+     *
+     * @param position       the position in the tree of the first wagon to remove (starting at 1)
+     * @param numberOfWagons the number of wagons to remove
+     */
+    void remove(int position, int numberOfWagons) {
+        Wagon[] front = split(root, position - 1);
+        Wagon[] rest = split(front[1], numberOfWagons);
+        root = merge(front[0], rest[1]);
+        if (root != null) root.treeParent = null;
+    }
+
+    void clear() {
+        root = null;
+    }
+
+    /**
+     * Builds a tree from a sequence of wagons in a single pass.
+     * Every wagon gets a random priority and the tree is built as a heap of these priorities,
+     * keeping the path to the right-most wagon as the stack of wagons that can still get a right child.
+     *
+     * @param wagon     the first wagon of a sequence of wagons
+     * @param backwards whether the sequence is followed by the previous wagons instead of the next wagons
+     * @return the root of the built tree
+     */
+    private static Wagon build(Wagon wagon, boolean backwards) {
+        Wagon rightMost = null;
+
+        for (Wagon currentWagon = wagon; currentWagon != null;
+             currentWagon = backwards ? currentWagon.getPreviousWagon() : currentWagon.getNextWagon()) {
+            currentWagon.treePriority = ThreadLocalRandom.current().nextInt();
+            currentWagon.treeRight = null;
+
+            // Wagons with a lower priority end up as the left subtree of the current wagon.
+            Wagon subtree = null;
+            while (rightMost != null && rightMost.treePriority < currentWagon.treePriority) {
+                update(rightMost);
+                subtree = rightMost;
+                rightMost = rightMost.treeParent;
+            }
+
+            currentWagon.treeLeft = subtree;
+            if (subtree != null) subtree.treeParent = currentWagon;
+            currentWagon.treeParent = rightMost;
+            if (rightMost != null) rightMost.treeRight = currentWagon;
+
+            rightMost = currentWagon;
+        }
+
+        // The sizes along the right-most path are complete now.
+        Wagon root = null;
+        for (; rightMost != null; rightMost = rightMost.treeParent) {
+            update(rightMost);
+            root = rightMost;
+        }
+
+        return root;
+    }
+
+    /**
+     * Splits a tree into the given number of wagons at the front and all wagons behind them.
+     *
+     * @return an array with the root of the front part and the root of the rear part
+     */
+    private static Wagon[] split(Wagon node, int numberOfWagons) {
+        if (node == null) return new Wagon[]{null, null};
+
+        Wagon[] parts;
+        if (sizeOf(node.treeLeft) >= numberOfWagons) {
+            parts = split(node.treeLeft, numberOfWagons);
+            node.treeLeft = parts[1];
+            parts[1] = node;
+        } else {
+            parts = split(node.treeRight, numberOfWagons - sizeOf(node.treeLeft) - 1);
+            node.treeRight = parts[0];
+            parts[0] = node;
+        }
+        update(node);
+
+        if (parts[0] != null) parts[0].treeParent = null;
+        if (parts[1] != null) parts[1].treeParent = null;
+        return parts;
+    }
+
+    /**
+     * Merges two trees, placing all wagons of the rear tree behind the wagons of the front tree.
+     *
+     * @return the root of the merged tree
+     */
+    private static Wagon merge(Wagon front, Wagon rear) {
+        if (front == null) return rear;
+        if (rear == null) return front;
+
+        if (front.treePriority > rear.treePriority) {
+            front.treeRight = merge(front.treeRight, rear);
+            update(front);
+            return front;
+        } else {
+            rear.treeLeft = merge(front, rear.treeLeft);
+            update(rear);
+            return rear;
+        }
+    }
+
+    /**
+     * Restores the size of the given node and the parent links of its children.
+     */
+    private static void update(Wagon node) {
+        node.treeSize = 1 + sizeOf(node.treeLeft) + sizeOf(node.treeRight);
+        if (node.treeLeft != null) node.treeLeft.treeParent = node;
+        if (node.treeRight != null) node.treeRight.treeParent = node;
+    }
+
+    private static int sizeOf(Wagon node) {
+        return node == null ? 0 : node.treeSize;
+    }
+}
@@ -0,0 +1,250 @@
+package models;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Load-tests the trains with a simulated yard, in which a large number of operators shunt wagons between shared trains.
+ * Every operator splits, moves and reverses random trains via a ConcurrentShunter. It picks a valid position or wagon
+ * from the snapshot of a train without locking it, which may be out of date by the time the operation runs,
+ * just like an operator in a real yard. The simulation measures the number of operations per second and
+ * the latency of the operations, and checks that the trains are still intact at the end.
+ * The operators are tasks of the given executor, so thousands of operators can share a few threads.
+ *
+ * @author HvA HBO-ICT, Irene Doodeman, Kevin Breurken
+ */
+public class YardSimulation {
+    private final Train[] trains;
+    private final int numberOfWagons;
+    private final ConcurrentShunter shunter = new ConcurrentShunter();
+
+    /**
+     * Creates a yard of freight trains, with locomotives that can pull every wagon of the yard.
+     *
+     * @param numberOfTrains
+     * @param wagonsPerTrain the number of wagons each train starts with
+     */
+    public YardSimulation(int numberOfTrains, int wagonsPerTrain) {
+        trains = new Train[numberOfTrains];
+        numberOfWagons = numberOfTrains * wagonsPerTrain;
+
+        for (int t = 0; t < numberOfTrains; t++) {
+            trains[t] = new Train(new Locomotive(t, numberOfWagons), "Yard", "Track " + t);
+            for (int w = 0; w < wagonsPerTrain; w++) trains[t].attachToRear(new FreightWagon(t * wagonsPerTrain + w, 1000));
+        }
+    }
+
+    Train getTrain(int index) {
+        return trains[index];
+    }
+
+    /**
+     * Lets the given number of operators perform random operations on the trains of the yard, until all are done.
+     *
+     * @param executor              runs the operators, each operator is a single task
+     * @param numberOfOperators
+     * @param operationsPerOperator
+     * @return the throughput, latencies and invariant violations of the run
+     * @throws InterruptedException if the thread is interrupted while waiting for the operators
+     */
+    public Result run(ExecutorService executor, int numberOfOperators, int operationsPerOperator) throws InterruptedException {
+        List<Callable<LatencyHistogram>> operators = new ArrayList<>();
+        for (int i = 0; i < numberOfOperators; i++) operators.add(() -> operate(operationsPerOperator));
+
+        long start = System.nanoTime();
+        List<Future<LatencyHistogram>> results = executor.invokeAll(operators);
+        long elapsed = System.nanoTime() - start;
+
+        LatencyHistogram latencies = new LatencyHistogram();
+        for (Future<LatencyHistogram> result : results) {
+            try {
+                latencies.add(result.get());
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("An operator failed", e.getCause());
+            }
+        }
+
+        return new Result(latencies, elapsed, checkInvariants());
+    }
+
+    /**
+     * Performs random operations on random trains.
+     *
+     * @return the latencies of the operations
+     */
+    private LatencyHistogram operate(int numberOfOperations) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        LatencyHistogram latencies = new LatencyHistogram();
+
+        for (int operation = 0; operation < numberOfOperations; operation++) {
+            Train fromTrain = trains[random.nextInt(trains.length)];
+            Train toTrain = trains[random.nextInt(trains.length)];
+            ConsistSnapshot wagons = fromTrain.getSnapshot();
+            int position = 1 + random.nextInt(Math.max(1, wagons.getNumberOfWagons()));
+
+            long start = System.nanoTime();
+            switch (random.nextInt(4)) {
+                case 0:
+                    shunter.splitAtPosition(fromTrain, position, toTrain);
+                    break;
+                case 1:
+                    shunter.reverse(fromTrain);
+                    break;
+                default:
+                    Wagon wagon = wagons.findWagonAtPosition(position);
+                    if (wagon != null) shunter.moveOneWagon(fromTrain, wagon.getId(), toTrain);
+            }
+            latencies.record(System.nanoTime() - start);
+        }
+
+        return latencies;
+    }
+
+    /**
+     * Checks that every train is still valid according to the ConsistValidator,
+     * and that no wagon got lost or duplicated.
+     * Should only be called while no operator is running.
+     *
+     * @return a description of every violation found
+     */
+    List<String> checkInvariants() {
+        List<String> violations = new ArrayList<>();
+        int totalNumberOfWagons = 0;
+
+        for (Train train : trains) {
+            ConsistValidator.Violation violation = ConsistValidator.findViolation(train);
+            if (violation != null) violations.add(train.getEngine() + " is not valid: " + violation);
+            totalNumberOfWagons += train.getNumberOfWagons();
+        }
+
+        if (totalNumberOfWagons != numberOfWagons)
+            violations.add("The yard has " + totalNumberOfWagons + " wagons instead of " + numberOfWagons);
+
+        return violations;
+    }
+
+    /**
+     * Runs a simulation: YardSimulation [operators] [operations per operator] [threads]
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int numberOfOperators = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        int operationsPerOperator = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int numberOfThreads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        YardSimulation simulation = new YardSimulation(256, 200);
+        ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+        try {
+            System.out.println(simulation.run(executor, numberOfOperators, operationsPerOperator));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * The outcome of a simulation.
+     */
+    public static class Result {
+        private final LatencyHistogram latencies;
+        private final long elapsedNanos;
+        private final List<String> violations;
+
+        private Result(LatencyHistogram latencies, long elapsedNanos, List<String> violations) {
+            this.latencies = latencies;
+            this.elapsedNanos = elapsedNanos;
+            this.violations = violations;
+        }
+
+        public long getNumberOfOperations() {
+            return latencies.getCount();
+        }
+
+        public double getOperationsPerSecond() {
+            return getNumberOfOperations() * 1e9 / Math.max(1, elapsedNanos);
+        }
+
+        /**
+         * @param percentile between 0 and 100, e.g. 99.9
+         * @return the latency in nanoseconds that the given percentage of the operations didn't exceed
+         * (rounded up by at most 1/16th)
+         */
+        public long getLatencyPercentile(double percentile) {
+            return latencies.getPercentile(percentile);
+        }
+
+        /**
+         * @return a description of every broken invariant found at the end of the simulation
+         */
+        public List<String> getViolations() {
+            return violations;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d operations, %.0f operations per second, latency p50 %d ns, p99 %d ns, p99.9 %d ns, max %d ns, %d violations",
+                    getNumberOfOperations(), getOperationsPerSecond(), getLatencyPercentile(50), getLatencyPercentile(99),
+                    getLatencyPercentile(99.9), getLatencyPercentile(100), violations.size());
+        }
+    }
+
+    /**
+     * Counts latencies in buckets that split every power of two into 16 parts,
+     * so a latency is kept within 1/16th of its value in a fixed amount of memory.
+     */
+    static class LatencyHistogram {
+        private static final int SUB_BUCKETS = 16;
+        private static final int SUB_BUCKET_BITS = 4;
+
+        private final long[] counts = new long[Long.SIZE * SUB_BUCKETS];
+        private long count;
+
+        void record(long nanos) {
+            counts[bucketOf(Math.max(0, nanos))]++;
+            count++;
+        }
+
+        void add(LatencyHistogram other) {
+            for (int bucket = 0; bucket < counts.length; bucket++) counts[bucket] += other.counts[bucket];
+            count += other.count;
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        /**
+         * @return the highest latency of the bucket that holds the given percentile
+         */
+        long getPercentile(double percentile) {
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+
+            long seen = 0;
+            for (int bucket = 0; bucket < counts.length; bucket++) {
+                seen += counts[bucket];
+                if (seen >= rank) return lowestOf(bucket + 1) - 1;
+            }
+            return 0;
+        }
+
+        private static int bucketOf(long nanos) {
+            if (nanos < SUB_BUCKETS) return (int) nanos;
+
+            // The highest bits of the latency choose the bucket, the lower bits are dropped.
+            int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+            int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+            return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+        }
+
+        private static long lowestOf(int bucket) {
+            if (bucket < SUB_BUCKETS) return bucket;
+
+            int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+            return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+        }
+    }
+}
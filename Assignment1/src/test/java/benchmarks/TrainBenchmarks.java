@@ -0,0 +1,125 @@
+package benchmarks;
+
+import models.Locomotive;
+import models.PassengerWagon;
+import models.Train;
+import models.Wagon;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks of the operations of a train, on trains from 10 up to 1,000,000 wagons.
+ * All operations should take about the same time on every size, a benchmark that slows down
+ * as the train grows points at an operation that walks the wagons.
+ * Every benchmark leaves the train with the same number of wagons, by undoing its change in the same invocation.
+ * Run with: mvn -P benchmark test-compile exec:exec
+ *
+ * @author HvA HBO-ICT, Irene Doodeman, Kevin Breurken
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TrainBenchmarks {
+    @Param({"10", "1000", "100000", "1000000"})
+    public int numberOfWagons;
+
+    private Train train;
+    private Train spareTrain;
+    private Wagon spareWagon;
+    private int[] randomIds;
+    private int[] randomPositions;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        train = new Train(new Locomotive(1, numberOfWagons + 10), "Amsterdam", "Paris");
+        spareTrain = new Train(new Locomotive(2, numberOfWagons + 10), "Amsterdam", "London");
+
+        for (int id = 1; id <= numberOfWagons; id++) train.attachToRear(new PassengerWagon(id, 40));
+        spareWagon = new PassengerWagon(numberOfWagons + 1, 40);
+        spareTrain.attachToRear(spareWagon);
+
+        // Random ids and positions are picked up front, so picking them isn't part of the benchmarks.
+        Random random = new Random(18);
+        randomIds = new int[1024];
+        randomPositions = new int[1024];
+        for (int i = 0; i < randomIds.length; i++) {
+            randomIds[i] = 1 + random.nextInt(numberOfWagons);
+            randomPositions[i] = 1 + random.nextInt(numberOfWagons);
+        }
+    }
+
+    private int nextIndex() {
+        next = (next + 1) & (randomIds.length - 1);
+        return next;
+    }
+
+    /**
+     * Attaches a wagon to the rear and takes it off again.
+     */
+    @Benchmark
+    public boolean attachToRear() {
+        return train.attachToRear(spareWagon) & spareTrain.attachToRear(spareWagon);
+    }
+
+    /**
+     * Inserts a wagon at a random position and moves it back to the spare train.
+     */
+    @Benchmark
+    public boolean insertAtPosition() {
+        return train.insertAtPosition(randomPositions[nextIndex()], spareWagon)
+                & train.moveOneWagon(spareWagon.getId(), spareTrain);
+    }
+
+    @Benchmark
+    public Wagon findWagonById() {
+        return train.findWagonById(randomIds[nextIndex()]);
+    }
+
+    /**
+     * Splits the train at a random position and attaches the split off wagons back to the rear.
+     */
+    @Benchmark
+    public boolean splitAtPosition() {
+        return train.splitAtPosition(randomPositions[nextIndex()], spareTrain)
+                & spareTrain.splitAtPosition(2, train);
+    }
+
+    /**
+     * Moves a random wagon to the spare train and back to the rear of the train.
+     */
+    @Benchmark
+    public boolean moveOneWagon() {
+        int id = randomIds[nextIndex()];
+        return train.moveOneWagon(id, spareTrain) & spareTrain.moveOneWagon(id, train);
+    }
+
+    @Benchmark
+    public Train reverse() {
+        train.reverse();
+        return train;
+    }
+
+    /**
+     * Runs all benchmarks with the GC profiler, which reports the allocation rate next to the throughput.
+     * Any JMH command line options can be given to select benchmarks or sizes.
+     */
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        new Runner(new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .include(TrainBenchmarks.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
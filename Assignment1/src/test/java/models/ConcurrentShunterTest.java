@@ -0,0 +1,101 @@
+package models;
+
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestMethodOrder(MethodOrderer.MethodName.class)
+public class ConcurrentShunterTest {
+    static final int NUMBER_OF_TRAINS = 64;
+    static final int WAGONS_PER_TRAIN = 100;
+
+    ConcurrentShunter shunter;
+    Train[] trains;
+
+    @BeforeEach
+    private void setup() {
+        shunter = new ConcurrentShunter();
+        trains = new Train[NUMBER_OF_TRAINS];
+        for (int t = 0; t < NUMBER_OF_TRAINS; t++) {
+            trains[t] = new Train(new Locomotive(t, NUMBER_OF_TRAINS * WAGONS_PER_TRAIN), "Here", "There");
+            for (int w = 0; w < WAGONS_PER_TRAIN; w++) {
+                trains[t].attachToRear(new FreightWagon(t * WAGONS_PER_TRAIN + w, 1000));
+            }
+        }
+    }
+
+    /**
+     * Lets the given number of threads shunt random wagons between random trains.
+     *
+     * @return the number of operations per second
+     */
+    private double shunt(int numberOfThreads, int operationsPerThread) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+        List<Future<?>> operators = new ArrayList<>();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < numberOfThreads; i++) {
+            operators.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int operation = 0; operation < operationsPerThread; operation++) {
+                    Train fromTrain = trains[random.nextInt(NUMBER_OF_TRAINS)];
+                    Train toTrain = trains[random.nextInt(NUMBER_OF_TRAINS)];
+
+                    switch (random.nextInt(4)) {
+                        case 0:
+                            int position = 1 + random.nextInt(WAGONS_PER_TRAIN);
+                            shunter.splitAtPosition(fromTrain, position, toTrain);
+                            break;
+                        case 1:
+                            shunter.reverse(fromTrain);
+                            break;
+                        default:
+                            int wagonId = random.nextInt(NUMBER_OF_TRAINS * WAGONS_PER_TRAIN);
+                            shunter.moveOneWagon(fromTrain, wagonId, toTrain);
+                    }
+                }
+            }));
+        }
+        for (Future<?> operator : operators) operator.get();
+        long duration = System.nanoTime() - start;
+        executor.shutdown();
+
+        return numberOfThreads * operationsPerThread / (duration / 1e9);
+    }
+
+    @Test
+    public void T01_ConcurrentShuntingKeepsAllWagonsAndLinks() throws Exception {
+        shunt(8, 20000);
+
+        int totalNumberOfWagons = 0;
+        for (Train train : trains) {
+            int numberOfWagons = 0;
+            for (Wagon wagon = train.getFirstWagon(); wagon != null; wagon = wagon.getNextWagon()) {
+                assertTrue(!wagon.hasPreviousWagon() || wagon == wagon.getPreviousWagon().getNextWagon());
+                assertSame(wagon, train.findWagonById(wagon.getId()));
+                numberOfWagons++;
+            }
+            assertEquals(numberOfWagons, train.getNumberOfWagons());
+            assertEquals(1000 * numberOfWagons, train.getTotalMaxWeight());
+            totalNumberOfWagons += numberOfWagons;
+        }
+        assertEquals(NUMBER_OF_TRAINS * WAGONS_PER_TRAIN, totalNumberOfWagons);
+    }
+
+    @Test
+    public void PERFORMANCE_measureThroughputScaling() throws Exception {
+        int availableProcessors = Runtime.getRuntime().availableProcessors();
+
+        for (int numberOfThreads = 1; numberOfThreads <= availableProcessors; numberOfThreads *= 2) {
+            System.out.printf("%d threads: %.0f operations per second%n",
+                    numberOfThreads, shunt(numberOfThreads, 200000 / numberOfThreads));
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package models;
+
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestMethodOrder(MethodOrderer.MethodName.class)
+public class ConsistOptimizerTest {
+    List<Wagon> wagons;
+    List<Locomotive> locomotives;
+
+    @BeforeEach
+    private void setup() {
+        wagons = new ArrayList<>();
+        for (int id = 8001; id <= 8010; id++) wagons.add(new PassengerWagon(id, id % 2 == 0 ? 60 : 40));
+        for (int id = 9001; id <= 9004; id++) wagons.add(new FreightWagon(id, 30000));
+
+        locomotives = new ArrayList<>();
+        for (int number = 1; number <= 6; number++) locomotives.add(new Locomotive(number, 3 + number));
+    }
+
+    /**
+     * Verifies that every wagon is assigned once and every train keeps to the limits.
+     */
+    private static void assertValid(ConsistOptimizer.Result result, List<Wagon> wagons, int maxSeats, int maxWeight) {
+        Map<Wagon, Boolean> seen = new IdentityHashMap<>();
+        Map<Locomotive, Boolean> locomotivesUsed = new IdentityHashMap<>();
+
+        for (ConsistOptimizer.Assignment assignment : result.getAssignments()) {
+            assertNull(locomotivesUsed.put(assignment.getLocomotive(), true));
+            assertTrue(assignment.getWagons().size() <= assignment.getLocomotive().getMaxWagons());
+
+            boolean passenger = assignment.getWagons().get(0) instanceof PassengerWagon;
+            long total = 0;
+            for (Wagon wagon : assignment.getWagons()) {
+                assertEquals(passenger, wagon instanceof PassengerWagon);
+                total += passenger ? ((PassengerWagon) wagon).getNumberOfSeats() : ((FreightWagon) wagon).getMaxWeight();
+                assertNull(seen.put(wagon, true));
+            }
+            assertTrue(total <= (passenger ? maxSeats : maxWeight) || assignment.getWagons().size() == 1);
+        }
+        for (Wagon wagon : result.getUnassignedWagons()) assertNull(seen.put(wagon, true));
+
+        assertEquals(wagons.size(), seen.size());
+    }
+
+    @Test
+    public void T01_WagonsAreAssignedToAsFewLocomotivesAsPossible() {
+        ConsistOptimizer.Result result = new ConsistOptimizer(260, 60000).optimize(wagons, locomotives);
+
+        assertValid(result, wagons, 260, 60000);
+        assertTrue(result.getUnassignedWagons().isEmpty());
+        // 500 seats need two passenger trains, 120000 kg needs two freight trains.
+        assertEquals(4, result.getNumberOfLocomotives());
+    }
+
+    @Test
+    public void T02_WagonsAreLeftWhenLocomotivesRunOut() {
+        ConsistOptimizer.Result result = new ConsistOptimizer(1000, 1000000).optimize(wagons, locomotives.subList(0, 1));
+
+        assertValid(result, wagons, 1000, 1000000);
+        assertEquals(1, result.getNumberOfLocomotives());
+        assertEquals(4, result.getAssignments().get(0).getWagons().size());
+        assertEquals(10, result.getUnassignedWagons().size());
+    }
+
+    @Test
+    public void T03_AssignmentsBuildTrains() {
+        ConsistOptimizer.Result result = new ConsistOptimizer(250, 60000).optimize(wagons, locomotives);
+
+        int seats = 0;
+        for (ConsistOptimizer.Assignment assignment : result.getAssignments()) {
+            Train train = assignment.toTrain("Amsterdam", "Paris");
+            assertEquals(assignment.getWagons().size(), train.getNumberOfWagons());
+            seats += train.getTotalNumberOfSeats();
+        }
+        assertEquals(500, seats);
+
+        // The wagons are part of a train now.
+        assertThrows(IllegalStateException.class, () -> result.getAssignments().get(0).toTrain("Amsterdam", "Paris"));
+    }
+
+    @Test
+    public void PERFORMANCE_Optimize100kWagons() {
+        Random random = new Random(100);
+        List<Wagon> wagons = new ArrayList<>();
+        long totalSeats = 0, totalWeight = 0;
+        int numberOfPassengerWagons = 0;
+        for (int id = 1; id <= 100_000; id++) {
+            if (random.nextInt(10) < 7) {
+                PassengerWagon wagon = new PassengerWagon(id, 20 + random.nextInt(61));
+                totalSeats += wagon.getNumberOfSeats();
+                numberOfPassengerWagons++;
+                wagons.add(wagon);
+            } else {
+                FreightWagon wagon = new FreightWagon(id, 10000 + random.nextInt(70001));
+                totalWeight += wagon.getMaxWeight();
+                wagons.add(wagon);
+            }
+        }
+        List<Locomotive> locomotives = new ArrayList<>();
+        for (int number = 1; number <= 20_000; number++) locomotives.add(new Locomotive(number, 10 + random.nextInt(21)));
+
+        int maxSeats = 1000, maxWeight = 800000;
+        // Neither the number of seats or weight nor the number of wagons can be spread over fewer locomotives.
+        long lowerBound = Math.max((totalSeats + maxSeats - 1) / maxSeats, (numberOfPassengerWagons + 29) / 30)
+                + Math.max((totalWeight + maxWeight - 1) / maxWeight, (wagons.size() - numberOfPassengerWagons + 29) / 30);
+
+        ConsistOptimizer.Result result = null;
+        for (int parallelism : new int[]{1, Runtime.getRuntime().availableProcessors()}) {
+            ForkJoinPool pool = new ForkJoinPool(Math.max(1, parallelism));
+            ConsistOptimizer optimizer = new ConsistOptimizer(maxSeats, maxWeight, pool);
+
+            for (int run = 0; run < 3; run++) {
+                long started = System.nanoTime();
+                result = optimizer.optimize(wagons, locomotives);
+                System.out.printf("%d threads: %d locomotives (at least %d) in %d ms%n", pool.getParallelism(),
+                        result.getNumberOfLocomotives(), lowerBound, (System.nanoTime() - started) / 1_000_000);
+            }
+            pool.shutdown();
+        }
+
+        assertValid(result, wagons, maxSeats, maxWeight);
+        assertTrue(result.getUnassignedWagons().isEmpty());
+        assertTrue(result.getNumberOfLocomotives() <= 1.1 * lowerBound);
+    }
+}
@@ -0,0 +1,153 @@
+package models;
+
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestMethodOrder(MethodOrderer.MethodName.class)
+public class ConsistSnapshotTest {
+    Train amsterdamParis, amsterdamLondon;
+
+    @BeforeEach
+    private void setup() {
+        amsterdamParis = new Train(new Locomotive(24531, 12), "Amsterdam", "Paris");
+        for (int id = 8001; id <= 8007; id++) {
+            amsterdamParis.attachToRear(new PassengerWagon(id, 40 + id % 10));
+        }
+        amsterdamLondon = new Train(new Locomotive(63427, 12), "Amsterdam", "London");
+    }
+
+    /**
+     * Verifies that the snapshot of the train holds the wagons of the train in the same order.
+     */
+    private static void assertMatchesTrain(Train train) {
+        ConsistSnapshot snapshot = train.getSnapshot();
+
+        List<Wagon> wagons = new ArrayList<>();
+        for (Wagon wagon = train.getFirstWagon(); wagon != null; wagon = wagon.getNextWagon()) wagons.add(wagon);
+        List<Wagon> snapshotWagons = new ArrayList<>();
+        for (Wagon wagon : snapshot) snapshotWagons.add(wagon);
+
+        assertEquals(wagons, snapshotWagons);
+        assertEquals(train.getNumberOfWagons(), snapshot.getNumberOfWagons());
+        assertEquals(train.getTotalNumberOfSeats(), snapshot.getTotalNumberOfSeats());
+        assertEquals(train.getTotalMaxWeight(), snapshot.getTotalMaxWeight());
+        for (int position = 0; position <= wagons.size() + 1; position++) {
+            assertSame(train.findWagonAtPosition(position), snapshot.findWagonAtPosition(position));
+        }
+    }
+
+    @Test
+    public void T01_TheSnapshotFollowsEveryOperation() {
+        assertMatchesTrain(amsterdamParis);
+        assertFalse(amsterdamLondon.getSnapshot().hasWagons());
+
+        assertTrue(amsterdamParis.splitAtPosition(5, amsterdamLondon));
+        assertMatchesTrain(amsterdamParis);
+        assertMatchesTrain(amsterdamLondon);
+
+        amsterdamParis.reverse();
+        assertMatchesTrain(amsterdamParis);
+        assertTrue(amsterdamParis.insertAtPosition(2, amsterdamLondon.findWagonAtPosition(2)));
+        assertTrue(amsterdamLondon.moveOneWagon(8005, amsterdamParis));
+        assertTrue(amsterdamParis.insertAtFront(new PassengerWagon(8011, 60)));
+        assertMatchesTrain(amsterdamParis);
+        assertMatchesTrain(amsterdamLondon);
+
+        amsterdamLondon.setFirstWagon(amsterdamParis.findWagonAtPosition(4));
+        assertMatchesTrain(amsterdamParis);
+        assertMatchesTrain(amsterdamLondon);
+        assertEquals("[Wagon-8007][Wagon-8003][Wagon-8002][Wagon-8001][Wagon-8005]", amsterdamLondon.getSnapshot().toString());
+    }
+
+    @Test
+    public void T02_ASnapshotDoesNotChangeWithTheTrain() {
+        ConsistSnapshot before = amsterdamParis.getSnapshot();
+        String wagonsBefore = before.toString();
+        int seatsBefore = before.getTotalNumberOfSeats();
+
+        amsterdamParis.reverse();
+        amsterdamParis.splitAtPosition(3, amsterdamLondon);
+        amsterdamParis.insertAtFront(new PassengerWagon(8011, 60));
+
+        assertEquals(wagonsBefore, before.toString());
+        assertEquals(seatsBefore, before.getTotalNumberOfSeats());
+        assertEquals(7, before.getNumberOfWagons());
+        assertEquals(8001, before.findWagonAtPosition(1).getId());
+        assertNotSame(before, amsterdamParis.getSnapshot());
+    }
+
+    @Test
+    public void T03_SnapshotsMatchTheTrainsAfterRandomShunting() {
+        List<Train> trains = new ArrayList<>();
+        Random random = new Random(16);
+        int id = 1;
+        for (int t = 0; t < 10; t++) {
+            Train train = new Train(new Locomotive(t, 60), "Amsterdam", "Paris");
+            for (int i = random.nextInt(20); i > 0; i--) train.attachToRear(new PassengerWagon(id++, 1 + random.nextInt(100)));
+            trains.add(train);
+        }
+
+        for (int i = 0; i < 2000; i++) {
+            Train from = trains.get(random.nextInt(trains.size()));
+            Train to = trains.get(random.nextInt(trains.size()));
+            switch (random.nextInt(4)) {
+                case 0:
+                    if (from.hasWagons()) from.splitAtPosition(1 + random.nextInt(from.getNumberOfWagons()), to);
+                    break;
+                case 1:
+                    from.reverse();
+                    break;
+                case 2:
+                    if (from.hasWagons() && to.hasWagons()) to.insertAtPosition(1 + random.nextInt(to.getNumberOfWagons()),
+                            from.findWagonAtPosition(1 + random.nextInt(from.getNumberOfWagons())));
+                    break;
+                default:
+                    if (from.hasWagons()) from.moveOneWagon(from.findWagonAtPosition(1 + random.nextInt(from.getNumberOfWagons())).getId(), to);
+            }
+            assertMatchesTrain(from);
+            assertMatchesTrain(to);
+        }
+    }
+
+    @Test
+    public void T04_ReadersNeverSeeAnOperationHalfway() throws InterruptedException {
+        int totalSeats = amsterdamParis.getTotalNumberOfSeats();
+        AtomicReference<String> failure = new AtomicReference<>();
+
+        // The wagons go back and forth between the trains, while a reader checks that the seats add up
+        // and that the train is never seen without wagons, which it only is halfway through setFirstWagon.
+        Thread reader = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted() && failure.get() == null) {
+                ConsistSnapshot snapshot = amsterdamParis.getSnapshot();
+                int seats = 0, numberOfWagons = 0;
+                for (Wagon wagon : snapshot) {
+                    seats += ((PassengerWagon) wagon).getNumberOfSeats();
+                    numberOfWagons++;
+                }
+                if (numberOfWagons == 0 || seats != snapshot.getTotalNumberOfSeats() || numberOfWagons != snapshot.getNumberOfWagons())
+                    failure.set(snapshot + " doesn't add up");
+            }
+        });
+        reader.start();
+
+        Random random = new Random(4);
+        for (int i = 0; i < 20000; i++) {
+            amsterdamParis.splitAtPosition(2 + random.nextInt(amsterdamParis.getNumberOfWagons() - 1), amsterdamLondon);
+            if (random.nextBoolean()) amsterdamLondon.reverse();
+            amsterdamParis.setFirstWagon(amsterdamParis.getFirstWagon());
+            amsterdamParis.attachToRear(amsterdamLondon.getFirstWagon());
+        }
+        reader.interrupt();
+        reader.join();
+
+        assertNull(failure.get());
+        assertEquals(totalSeats, amsterdamParis.getSnapshot().getTotalNumberOfSeats());
+        assertMatchesTrain(amsterdamParis);
+    }
+}
@@ -0,0 +1,116 @@
+package models;
+
+import org.junit.jupiter.api.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static models.ConsistValidator.Violation.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestMethodOrder(MethodOrderer.MethodName.class)
+public class ConsistValidatorTest {
+    Train amsterdamParis;
+
+    @BeforeEach
+    private void setup() {
+        amsterdamParis = new Train(new Locomotive(24531, 7), "Amsterdam", "Paris");
+        for (int id = 8001; id <= 8007; id++) {
+            amsterdamParis.attachToRear(new PassengerWagon(id, 40));
+        }
+    }
+
+    @Test
+    public void T01_TrainsStayValidWhileShunting() {
+        List<Train> trains = new ArrayList<>();
+        Random random = new Random(20);
+        int id = 1;
+        for (int t = 0; t < 10; t++) {
+            Train train = new Train(new Locomotive(t, 100), "Amsterdam", "Paris");
+            for (int i = random.nextInt(20); i > 0; i--) train.attachToRear(new FreightWagon(id++, 1 + random.nextInt(1000)));
+            trains.add(train);
+        }
+
+        for (int i = 0; i < 5000; i++) {
+            Train from = trains.get(random.nextInt(trains.size()));
+            Train to = trains.get(random.nextInt(trains.size()));
+            int position = 1 + random.nextInt(Math.max(1, from.getNumberOfWagons()));
+            switch (random.nextInt(4)) {
+                case 0:
+                    from.splitAtPosition(position, to);
+                    break;
+                case 1:
+                    from.reverse();
+                    break;
+                case 2:
+                    if (from.hasWagons()) to.insertAtFront(from.findWagonAtPosition(position));
+                    break;
+                default:
+                    if (from.hasWagons()) from.moveOneWagon(from.findWagonAtPosition(position).getId(), to);
+            }
+            ConsistValidator.validate(from);
+            ConsistValidator.validate(to);
+        }
+    }
+
+    @Test
+    public void T02_BrokenLinksAndCyclesAreFound() {
+        assertNull(ConsistValidator.findViolation(amsterdamParis));
+
+        Wagon wagon = amsterdamParis.findWagonAtPosition(3);
+        Wagon next = wagon.getNextWagon();
+        wagon.setNextWagon(amsterdamParis.findWagonAtPosition(5));
+        assertEquals(BROKEN_LINK, ConsistValidator.findViolation(amsterdamParis));
+
+        // The last wagon leads back to the first one.
+        wagon.setNextWagon(next);
+        amsterdamParis.getLastWagonAttached().setNextWagon(amsterdamParis.getFirstWagon());
+        assertEquals(WRONG_NUMBER_OF_WAGONS, ConsistValidator.findViolation(amsterdamParis));
+
+        amsterdamParis.getLastWagonAttached().setNextWagon(null);
+        assertTrue(ConsistValidator.isValid(amsterdamParis));
+    }
+
+    @Test
+    public void T03_ForeignAndMixedWagonsAreFound() {
+        // A wagon linked in behind the back of the train is not owned by it.
+        Wagon front = amsterdamParis.findWagonAtPosition(3);
+        Wagon rear = amsterdamParis.findWagonAtPosition(5);
+        PassengerWagon stranger = new PassengerWagon(8100, 40);
+        front.setNextWagon(stranger);
+        stranger.setPreviousWagon(front);
+        stranger.setNextWagon(rear);
+        rear.setPreviousWagon(stranger);
+        assertEquals(FOREIGN_WAGON, ConsistValidator.findViolation(amsterdamParis));
+        assertThrows(IllegalStateException.class, () -> ConsistValidator.validate(amsterdamParis));
+
+        // Replacing the wagons doesn't check them.
+        Train train = new Train(new Locomotive(1, 2), "Amsterdam", "Paris");
+        train.setWagons(new Wagon[]{new FreightWagon(9001, 50000), new PassengerWagon(8101, 40)});
+        assertEquals(MIXED_TYPES, ConsistValidator.findViolation(train));
+
+        train.setWagons(new Wagon[]{new FreightWagon(9002, 50000), new FreightWagon(9003, 50000), new FreightWagon(9004, 50000)});
+        assertEquals(OVER_CAPACITY, ConsistValidator.findViolation(train));
+    }
+
+    @Test
+    public void T04_ValidatingDoesNotAllocate() {
+        Train train = new Train(new Locomotive(1, 100_000), "Amsterdam", "Paris");
+        List<Wagon> wagons = new ArrayList<>();
+        for (int id = 1; id <= 100_000; id++) wagons.add(new PassengerWagon(id, 40));
+        assertTrue(train.attachAll(wagons));
+        train.reverse();
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        for (int i = 0; i < 20; i++) assertTrue(ConsistValidator.isValid(train));
+
+        long before = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        for (int i = 0; i < 20; i++) assertTrue(ConsistValidator.isValid(train));
+        long allocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+
+        // Only a small margin for the measurement itself, a single allocation per wagon would take megabytes.
+        assertTrue(allocated < 10_000, allocated + " bytes");
+    }
+}
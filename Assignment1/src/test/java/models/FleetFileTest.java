@@ -0,0 +1,150 @@
+package models;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestMethodOrder(MethodOrderer.MethodName.class)
+public class FleetFileTest {
+    @TempDir
+    Path directory;
+
+    List<Train> fleet;
+
+    @BeforeEach
+    private void setup() {
+        Train amsterdamParis = new Train(new Locomotive(24531, 7), "Amsterdam", "Paris");
+        for (int id = 8001; id <= 8007; id++) {
+            amsterdamParis.attachToRear(new PassengerWagon(id, 30 + id % 10));
+        }
+        amsterdamParis.reverse();
+
+        Train amsterdamLondon = new Train(new Locomotive(63427, 6), "Amsterdam", "Londen");
+        amsterdamLondon.attachToRear(new FreightWagon(9001, 50000));
+        amsterdamLondon.attachToRear(new FreightWagon(9002, 60000));
+
+        Train standby = new Train(new Locomotive(29123, 5), "Utrecht", null);
+
+        fleet = List.of(amsterdamParis, amsterdamLondon, standby);
+    }
+
+    @Test
+    public void T01_AFleetCanBeWrittenAndReadBack() throws IOException {
+        Path file = directory.resolve("fleet.bin");
+        FleetFile.write(file, fleet);
+
+        List<Train> loaded = FleetFile.read(file);
+
+        assertEquals(fleet.size(), loaded.size());
+        for (int i = 0; i < fleet.size(); i++) {
+            Train train = fleet.get(i);
+            Train loadedTrain = loaded.get(i);
+
+            assertEquals(train.toString(), loadedTrain.toString());
+            assertEquals(train.getEngine().getMaxWagons(), loadedTrain.getEngine().getMaxWagons());
+            assertEquals(train.getTotalNumberOfSeats(), loadedTrain.getTotalNumberOfSeats());
+            assertEquals(train.getTotalMaxWeight(), loadedTrain.getTotalMaxWeight());
+        }
+        assertNull(loaded.get(2).getDestination());
+    }
+
+    @Test
+    public void T02_ALoadedTrainCanBeShunted() throws IOException {
+        Path file = directory.resolve("fleet.bin");
+        FleetFile.write(file, fleet);
+        Train amsterdamParis = FleetFile.read(file).get(0);
+
+        assertEquals(8004, amsterdamParis.findWagonAtPosition(4).getId());
+        assertEquals(8001, amsterdamParis.getLastWagonAttached().getId());
+        assertNotNull(amsterdamParis.findWagonById(8003));
+
+        Train amsterdamLondon = new Train(new Locomotive(63427, 6), "Amsterdam", "London");
+        assertTrue(amsterdamParis.splitAtPosition(5, amsterdamLondon));
+        assertEquals("[Loc-63427][Wagon-8003][Wagon-8002][Wagon-8001] with 3 wagons from Amsterdam to London",
+                amsterdamLondon.toString());
+    }
+
+    @Test
+    public void T03_AnotherFormatIsRejected() throws IOException {
+        Path file = directory.resolve("fleet.bin");
+        FleetFile.write(file, fleet);
+
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[5] = 2; // version 2
+        assertThrows(IOException.class, () -> FleetFile.read(ByteBuffer.wrap(bytes)));
+
+        byte[] truncated = new byte[bytes.length - 3];
+        System.arraycopy(Files.readAllBytes(file), 0, truncated, 0, truncated.length);
+        assertThrows(IOException.class, () -> FleetFile.read(ByteBuffer.wrap(truncated)));
+
+        assertThrows(IOException.class, () -> FleetFile.read(ByteBuffer.wrap("Amsterdam, Paris".getBytes())));
+    }
+
+    @Test
+    public void T04_CorruptCountsAreRejected() throws IOException {
+        Path file = directory.resolve("fleet.bin");
+        FleetFile.write(file, fleet);
+        byte[] bytes = Files.readAllBytes(file);
+
+        // The number of trains, the length of the origin and the number of wagons of the first train,
+        // of which only the length may be negative, as that marks a missing origin.
+        for (int offset : new int[]{6, 18, 40}) {
+            for (int count : new int[]{-2, Integer.MAX_VALUE, bytes.length}) {
+                if (count < 0 && offset == 18) continue;
+
+                ByteBuffer corrupt = ByteBuffer.wrap(bytes.clone());
+                corrupt.putInt(offset, count);
+                assertThrows(IOException.class, () -> FleetFile.read(corrupt), "count " + count + " at " + offset);
+            }
+        }
+
+        // More wagons than the locomotive of the first train can pull.
+        ByteBuffer tooLong = ByteBuffer.wrap(bytes.clone());
+        tooLong.putInt(14, 6);
+        assertThrows(IOException.class, () -> FleetFile.read(tooLong));
+
+        // Two wagons of the first train with the same id, which are stored from position 44 on.
+        ByteBuffer sameIds = ByteBuffer.wrap(bytes.clone());
+        sameIds.putInt(44 + 9 + 1, sameIds.getInt(44 + 1));
+        assertThrows(IOException.class, () -> FleetFile.read(sameIds));
+
+        // A freight wagon (type 2) behind the first passenger wagon of the first train.
+        ByteBuffer mixedTypes = ByteBuffer.wrap(bytes.clone());
+        mixedTypes.put(44 + 9, (byte) 2);
+        assertThrows(IOException.class, () -> FleetFile.read(mixedTypes));
+    }
+
+    @Test
+    public void PERFORMANCE_LoadALargeFleet() throws IOException {
+        List<Train> largeFleet = new ArrayList<>();
+        for (int t = 0; t < 1000; t++) {
+            Train train = new Train(new Locomotive(t, 1000), "Amsterdam", "Paris");
+            Wagon[] wagons = new Wagon[1000];
+            for (int i = 0; i < wagons.length; i++) wagons[i] = new PassengerWagon(t * 1000 + i, 40);
+            train.setWagons(wagons);
+            largeFleet.add(train);
+        }
+
+        Path file = directory.resolve("large.bin");
+        long started = System.nanoTime();
+        FleetFile.write(file, largeFleet);
+        long written = System.nanoTime();
+        List<Train> loaded = FleetFile.read(file);
+        long read = System.nanoTime();
+
+        System.out.printf("%d MB written in %d ms, loaded in %d ms%n",
+                Files.size(file) >> 20, (written - started) / 1_000_000, (read - written) / 1_000_000);
+
+        assertEquals(1000, loaded.size());
+        assertEquals(1000, loaded.get(999).getNumberOfWagons());
+        assertEquals(999_999, loaded.get(999).getLastWagonAttached().getId());
+    }
+}
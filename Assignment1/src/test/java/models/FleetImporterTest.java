@@ -0,0 +1,90 @@
+package models;
+
+import org.junit.jupiter.api.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestMethodOrder(MethodOrderer.MethodName.class)
+public class FleetImporterTest {
+    FleetImporter importer;
+
+    @BeforeEach
+    private void setup() {
+        importer = new FleetImporter();
+    }
+
+    private static InputStream input(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void T01_AFleetIsImported() throws IOException {
+        List<Train> trains = importer.importFleet(input(
+                "# the fleet of TrainsMain\n" +
+                        "L,24531,7\n" +
+                        "L,63427,6\r\n" +
+                        "T,24531,Amsterdam,Paris\n" +
+                        "P,8001,32\n" +
+                        "P, 8002 , 32\n" +
+                        "\n" +
+                        "P,8003,18\n" +
+                        "T,63427,Amsterdam,London\n" +
+                        "F,9001,50000"));
+
+        assertEquals(0, importer.getRejects().size(), importer.getRejects().toString());
+        assertEquals(2, trains.size());
+        assertEquals("[Loc-24531][Wagon-8001][Wagon-8002][Wagon-8003] with 3 wagons from Amsterdam to Paris", trains.get(0).toString());
+        assertEquals(82, trains.get(0).getTotalNumberOfSeats());
+        assertEquals("[Loc-63427][Wagon-9001] with 1 wagons from Amsterdam to London", trains.get(1).toString());
+        assertEquals(50000, trains.get(1).getTotalMaxWeight());
+        assertEquals(8002, trains.get(0).findWagonById(8002).getId());
+    }
+
+    @Test
+    public void T02_IncompatibleWagonsAreRejectedPerLine() throws IOException {
+        List<Train> trains = importer.importFleet(input(
+                "L,24531,2\n" +
+                        "T,24531,Amsterdam,Paris\n" +
+                        "P,8001,32\n" +
+                        "F,9001,50000\n" +
+                        "P,8001,32\n" +
+                        "P,8002,32\n" +
+                        "P,8003,32\n" +
+                        "P,8004,many\n" +
+                        "X,1,2\n" +
+                        "T,11111,Amsterdam,Berlin\n" +
+                        "P,8005,32\n"));
+
+        assertEquals(1, trains.size());
+        assertEquals(2, trains.get(0).getNumberOfWagons());
+
+        List<FleetImporter.Reject> rejects = importer.getRejects();
+        assertEquals(7, rejects.size());
+        assertEquals(4, rejects.get(0).getLineNumber());
+        assertEquals("F,9001,50000", rejects.get(0).getLine());
+        assertEquals(5, rejects.get(1).getLineNumber());
+        assertTrue(rejects.get(2).getReason().contains("more than 2 wagons"), rejects.get(2).getReason());
+        assertEquals(8, rejects.get(3).getLineNumber());
+        assertEquals(9, rejects.get(4).getLineNumber());
+        assertEquals(10, rejects.get(5).getLineNumber());
+        assertEquals(11, rejects.get(6).getLineNumber());
+    }
+
+    @Test
+    public void T03_LinesAcrossBlocksAreImported() throws IOException {
+        StringBuilder text = new StringBuilder("L;1;200000\nT;1;Amsterdam;Paris\n");
+        for (int id = 1; id <= 100_000; id++) text.append("P;").append(id).append(";40\n");
+
+        List<Train> trains = new FleetImporter((byte) ';').importFleet(input(text.toString()));
+
+        assertEquals(100_000, trains.get(0).getNumberOfWagons());
+        assertEquals(4_000_000, trains.get(0).getTotalNumberOfSeats());
+        assertEquals(54321, trains.get(0).findWagonAtPosition(54321).getId());
+    }
+}
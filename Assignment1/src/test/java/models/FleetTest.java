@@ -0,0 +1,171 @@
+package models;
+
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestMethodOrder(MethodOrderer.MethodName.class)
+public class FleetTest {
+    Fleet fleet;
+    Train amsterdamParis, amsterdamLondon, amsterdamBerlin;
+
+    @BeforeEach
+    private void setup() {
+        amsterdamParis = new Train(new Locomotive(24531, 7), "Amsterdam", "Paris");
+        for (int id = 8001; id <= 8007; id++) {
+            amsterdamParis.attachToRear(new PassengerWagon(id, 40));
+        }
+        amsterdamLondon = new Train(new Locomotive(63427, 6), "Amsterdam", "London");
+        amsterdamBerlin = new Train(new Locomotive(29123, 7), "Amsterdam", "Berlin");
+        amsterdamBerlin.attachToRear(new FreightWagon(9001, 50000));
+
+        fleet = new Fleet();
+        fleet.add(amsterdamParis);
+        fleet.add(amsterdamLondon);
+        fleet.add(amsterdamBerlin);
+    }
+
+    @Test
+    public void T01_TrainsAreFoundByRouteTypeAndCapacity() {
+        assertEquals(List.of(amsterdamParis), fleet.findPassengerTrains("Amsterdam", "Paris", 280));
+        assertEquals(List.of(), fleet.findPassengerTrains("Amsterdam", "Paris", 281));
+        assertEquals(List.of(amsterdamParis), fleet.findPassengerTrains("Amsterdam", null, 0));
+        assertEquals(List.of(amsterdamBerlin), fleet.findFreightTrains(null, "Berlin", 50000));
+        assertEquals(List.of(), fleet.findFreightTrains("Paris", null, 0));
+        assertEquals(List.of(), fleet.findFreightTrains(null, "Paris", 0));
+        assertEquals(3, fleet.getNumberOfTrains());
+    }
+
+    @Test
+    public void T02_TheIndexFollowsMovingWagons() {
+        amsterdamParis.splitAtPosition(4, amsterdamLondon);
+
+        assertEquals(List.of(amsterdamParis), fleet.findPassengerTrains("Amsterdam", "Paris", 120));
+        assertEquals(List.of(), fleet.findPassengerTrains("Amsterdam", "Paris", 121));
+        assertEquals(List.of(amsterdamLondon), fleet.findPassengerTrains(null, "London", 160));
+
+        amsterdamLondon.setFirstWagon(null);
+        assertEquals(List.of(), fleet.findPassengerTrains(null, "London", 0));
+
+        amsterdamBerlin.moveOneWagon(9001, amsterdamLondon);
+        assertEquals(List.of(amsterdamLondon), fleet.findFreightTrains("Amsterdam", null, 1));
+    }
+
+    @Test
+    public void T03_ARemovedTrainIsNotFound() {
+        assertTrue(fleet.remove(amsterdamParis));
+        assertFalse(fleet.remove(amsterdamParis));
+
+        assertEquals(List.of(), fleet.findPassengerTrains(null, null, 0));
+        amsterdamParis.reverse();
+        amsterdamParis.moveOneWagon(8007, amsterdamLondon);
+        assertEquals(List.of(amsterdamLondon), fleet.findPassengerTrains(null, null, 0));
+    }
+
+    @Test
+    public void T04_QueriesMatchAScanAfterRandomShunting() {
+        String[] cities = {"Amsterdam", "Paris", "London", "Berlin"};
+        List<Train> trains = new ArrayList<>();
+        Fleet fleet = new Fleet();
+        Random random = new Random(7);
+
+        int id = 1;
+        for (int t = 0; t < 200; t++) {
+            Train train = new Train(new Locomotive(t, 20), cities[random.nextInt(4)], cities[random.nextInt(4)]);
+            boolean passenger = t % 2 == 0;
+            for (int i = random.nextInt(10); i > 0; i--) {
+                train.attachToRear(passenger ? new PassengerWagon(id++, 1 + random.nextInt(100))
+                        : new FreightWagon(id++, 1 + random.nextInt(100000)));
+            }
+            fleet.add(train);
+            trains.add(train);
+        }
+
+        for (int i = 0; i < 2000; i++) {
+            Train from = trains.get(random.nextInt(trains.size()));
+            Train to = trains.get(random.nextInt(trains.size()));
+            if (from.hasWagons()) from.splitAtPosition(1 + random.nextInt(from.getNumberOfWagons()), to);
+        }
+
+        for (String origin : new String[]{null, "Amsterdam", "Paris"}) {
+            for (String destination : new String[]{null, "London", "Berlin"}) {
+                for (int minimumSeats : new int[]{0, 1, 100, 257, 300, 1000}) {
+                    List<Train> expected = trains.stream()
+                            .filter(train -> origin == null || origin.equals(train.getOrigin()))
+                            .filter(train -> destination == null || destination.equals(train.getDestination()))
+                            .filter(train -> train.isPassengerTrain() && train.getTotalNumberOfSeats() >= minimumSeats)
+                            .collect(Collectors.toList());
+
+                    assertEquals(sorted(expected), sorted(fleet.findPassengerTrains(origin, destination, minimumSeats)));
+                }
+                List<Train> expected = trains.stream()
+                        .filter(train -> origin == null || origin.equals(train.getOrigin()))
+                        .filter(train -> destination == null || destination.equals(train.getDestination()))
+                        .filter(train -> train.isFreightTrain() && train.getTotalMaxWeight() >= 250000)
+                        .collect(Collectors.toList());
+
+                assertEquals(sorted(expected), sorted(fleet.findFreightTrains(origin, destination, 250000)));
+            }
+        }
+    }
+
+    @Test
+    public void T05_ConcurrentShuntingKeepsTheIndexConsistent() throws Exception {
+        // Every operator shunts its own pair of trains, but all trains share the buckets of a single route.
+        int operators = 8;
+        List<Train> trains = new ArrayList<>();
+        for (int t = 0; t < 2 * operators; t++) {
+            Train train = new Train(new Locomotive(100 + t, 1000), "Amsterdam", "Brussels");
+            for (int id = 0; id < 50; id++) train.attachToRear(new PassengerWagon(100_000 * t + id, 1 + id % 60));
+            trains.add(train);
+            fleet.add(train);
+        }
+
+        ConcurrentShunter shunter = new ConcurrentShunter();
+        ExecutorService executor = Executors.newFixedThreadPool(operators + 1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int operator = 0; operator < operators; operator++) {
+                Train from = trains.get(2 * operator), to = trains.get(2 * operator + 1);
+                Random random = new Random(operator);
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 20_000; i++) {
+                        Train source = random.nextBoolean() ? from : to;
+                        Train target = source == from ? to : from;
+                        int numberOfWagons = shunter.inspect(source, Train::getNumberOfWagons);
+                        if (numberOfWagons > 0) shunter.splitAtPosition(source, 1 + random.nextInt(numberOfWagons), target);
+                    }
+                }));
+            }
+            // Queries run alongside the shunting.
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 2_000; i++) fleet.findPassengerTrains("Amsterdam", "Brussels", i % 3000);
+            }));
+            for (Future<?> future : futures) future.get();
+        } finally {
+            executor.shutdown();
+        }
+
+        for (int minimumSeats : new int[]{0, 1, 100, 500, 1000, 1500, 3000}) {
+            List<Train> expected = new ArrayList<>();
+            for (Train train : trains) {
+                if (train.isPassengerTrain() && train.getTotalNumberOfSeats() >= minimumSeats) expected.add(train);
+            }
+            assertEquals(sorted(expected), sorted(fleet.findPassengerTrains("Amsterdam", "Brussels", minimumSeats)));
+        }
+    }
+
+    private static List<Train> sorted(List<Train> trains) {
+        trains.sort(Comparator.comparingInt(train -> train.getEngine().getLocNumber()));
+        return trains;
+    }
+}
@@ -0,0 +1,176 @@
+package models;
+
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestMethodOrder(MethodOrderer.MethodName.class)
+public class ShuntingPlanTest {
+    Train amsterdamParis, amsterdamLondon;
+
+    @BeforeEach
+    private void setup() {
+        amsterdamParis = new Train(new Locomotive(24531, 7), "Amsterdam", "Paris");
+        for (int id = 8001; id <= 8007; id++) {
+            amsterdamParis.attachToRear(new PassengerWagon(id, 40));
+        }
+        amsterdamLondon = new Train(new Locomotive(63427, 6), "Amsterdam", "London");
+    }
+
+    @Test
+    public void T01_AValidPlanIsExecutedCompletely() {
+        PassengerWagon wagon1 = new PassengerWagon(8011, 50);
+        PassengerWagon wagon2 = new PassengerWagon(8012, 50);
+        ShuntingPlan plan = new ShuntingPlan()
+                .splitAtPosition(amsterdamParis, 4, amsterdamLondon)
+                .reverse(amsterdamLondon)
+                .moveOneWagon(amsterdamLondon, 8007, amsterdamParis)
+                .insertAtFront(amsterdamLondon, wagon1)
+                .splitAtPosition(amsterdamLondon, 2, amsterdamParis)
+                .attachToRear(amsterdamLondon, wagon2);
+
+        assertEquals(-1, plan.validate());
+        assertTrue(plan.execute());
+
+        assertEquals("[Loc-24531][Wagon-8001][Wagon-8002][Wagon-8003][Wagon-8007][Wagon-8006][Wagon-8005][Wagon-8004]" +
+                " with 7 wagons from Amsterdam to Paris", amsterdamParis.toString());
+        assertEquals("[Loc-63427][Wagon-8011][Wagon-8012] with 2 wagons from Amsterdam to London", amsterdamLondon.toString());
+    }
+
+    @Test
+    public void T02_AnInvalidPlanChangesNothing() {
+        ShuntingPlan plan = new ShuntingPlan()
+                .splitAtPosition(amsterdamParis, 4, amsterdamLondon)
+                .reverse(amsterdamLondon)
+                .insertAtFront(amsterdamLondon, new FreightWagon(9001, 50000));
+
+        assertEquals(2, plan.validate());
+        assertFalse(plan.execute());
+
+        assertEquals(7, amsterdamParis.getNumberOfWagons());
+        assertEquals(8004, amsterdamParis.findWagonAtPosition(4).getId());
+        assertFalse(amsterdamLondon.hasWagons());
+    }
+
+    @Test
+    public void T03_APlanChecksCapacityAfterEarlierSteps() {
+        ShuntingPlan plan = new ShuntingPlan()
+                .splitAtPosition(amsterdamParis, 2, amsterdamLondon)
+                .moveOneWagon(amsterdamParis, 8001, amsterdamLondon);
+
+        assertEquals(1, plan.validate());
+        assertEquals(7, amsterdamParis.getNumberOfWagons());
+    }
+
+    @Test
+    public void T03_APlanFollowsWagonsMovedByEarlierSteps() {
+        ShuntingPlan plan = new ShuntingPlan()
+                .splitAtPosition(amsterdamParis, 5, amsterdamLondon)
+                .moveOneWagon(amsterdamParis, 8006, amsterdamLondon);
+
+        assertEquals(1, plan.validate());
+
+        plan = new ShuntingPlan()
+                .splitAtPosition(amsterdamParis, 5, amsterdamLondon)
+                .reverse(amsterdamLondon)
+                .splitAtPosition(amsterdamLondon, 3, amsterdamParis)
+                .moveOneWagon(amsterdamParis, 8005, amsterdamLondon);
+
+        assertTrue(plan.execute());
+        assertEquals(8005, amsterdamLondon.getLastWagonAttached().getId());
+        assertEquals(8007, amsterdamLondon.getFirstWagon().getId());
+        assertEquals(8006, amsterdamLondon.getFirstWagon().getNextWagon().getId());
+        assertEquals(4, amsterdamParis.getNumberOfWagons());
+    }
+
+    @Test
+    public void T04_AFailingStepRollsBackTheEarlierSteps() {
+        // A wagon that refuses to be detached lets the plan fail after validation.
+        PassengerWagon stuck = new PassengerWagon(8011, 50) {
+            @Override
+            public Wagon detachFront() {
+                throw new IllegalStateException("stuck");
+            }
+        };
+        PassengerWagon loose = new PassengerWagon(8012, 50);
+        loose.attachTail(new PassengerWagon(8013, 50));
+        ShuntingPlan plan = new ShuntingPlan()
+                .splitAtPosition(amsterdamParis, 4, amsterdamLondon)
+                .reverse(amsterdamLondon)
+                .insertAtFront(amsterdamParis, loose)
+                .attachToRear(amsterdamLondon, stuck);
+
+        assertEquals(-1, plan.validate());
+        assertThrows(IllegalStateException.class, plan::execute);
+
+        assertEquals("[Loc-24531][Wagon-8001][Wagon-8002][Wagon-8003][Wagon-8004][Wagon-8005][Wagon-8006][Wagon-8007]" +
+                " with 7 wagons from Amsterdam to Paris", amsterdamParis.toString());
+        assertFalse(amsterdamLondon.hasWagons());
+        assertEquals(8013, loose.getNextWagon().getId());
+        assertFalse(loose.hasPreviousWagon() || loose.getNextWagon().hasNextWagon());
+        assertTrue(ConsistValidator.isValid(amsterdamParis));
+    }
+
+    @Test
+    public void T05_APlanWaitsForTheLocksOfItsTrains() throws InterruptedException {
+        ShuntingPlan plan = new ShuntingPlan()
+                .splitAtPosition(amsterdamParis, 4, amsterdamLondon)
+                .reverse(amsterdamLondon);
+        Thread executor = new Thread(plan::execute);
+
+        // Another thread that holds the lock of a train, like a ConcurrentShunter does, keeps the plan from starting.
+        amsterdamLondon.lock.lock();
+        try {
+            executor.start();
+            executor.join(200);
+            assertTrue(executor.isAlive());
+            assertEquals(7, amsterdamParis.getNumberOfWagons());
+        } finally {
+            amsterdamLondon.lock.unlock();
+        }
+
+        executor.join();
+        assertEquals("[Loc-63427][Wagon-8007][Wagon-8006][Wagon-8005][Wagon-8004] with 4 wagons from Amsterdam to London",
+                amsterdamLondon.toString());
+    }
+
+    @Test
+    public void PERFORMANCE_ValidateLongPlansOnLongTrains() {
+        Train east = new Train(new Locomotive(1, 200_000), "Amsterdam", "Berlin");
+        Train west = new Train(new Locomotive(2, 200_000), "Amsterdam", "London");
+        List<Wagon> wagons = new ArrayList<>();
+        for (int id = 1; id <= 100_000; id++) wagons.add(new FreightWagon(id, 1000));
+        assertTrue(east.attachAll(wagons));
+
+        // Each step moves only a few wagons, so a step should not cost time in the length of the trains.
+        ShuntingPlan plan = new ShuntingPlan();
+        for (int step = 0; step < 50_000; step++) {
+            switch (step % 4) {
+                case 0:
+                    plan.splitAtPosition(east, 99_995 - 6 * (step / 4), west);
+                    break;
+                case 1:
+                    plan.reverse(west);
+                    break;
+                case 2:
+                    plan.moveOneWagon(east, 10_000 + step / 4, west);
+                    break;
+                default:
+                    plan.reverse(west);
+            }
+        }
+
+        long start = System.nanoTime();
+        int failingStep = plan.validate();
+        long validating = System.nanoTime() - start;
+        System.out.printf("Validated %d steps on trains of %d wagons in %.1f ms%n",
+                plan.getNumberOfSteps(), east.getNumberOfWagons(), validating / 1e6);
+
+        assertEquals(-1, failingStep);
+        assertTrue(validating < 5_000_000_000L);
+        assertEquals(100_000, east.getNumberOfWagons());
+    }
+}
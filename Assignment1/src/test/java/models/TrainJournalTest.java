@@ -0,0 +1,221 @@
+package models;
+
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestMethodOrder(MethodOrderer.MethodName.class)
+public class TrainJournalTest {
+    Train amsterdamParis, amsterdamLondon;
+    TrainJournal journal;
+
+    @BeforeEach
+    private void setup() {
+        amsterdamParis = new Train(new Locomotive(24531, 12), "Amsterdam", "Paris");
+        for (int id = 8001; id <= 8007; id++) {
+            amsterdamParis.attachToRear(new PassengerWagon(id, 40 + id % 10));
+        }
+        amsterdamLondon = new Train(new Locomotive(63427, 12), "Amsterdam", "London");
+
+        journal = new TrainJournal(10);
+        journal.track(amsterdamParis);
+        journal.track(amsterdamLondon);
+    }
+
+    private String state() {
+        return amsterdamParis + " " + amsterdamParis.getTotalNumberOfSeats() + " / "
+                + amsterdamLondon + " " + amsterdamLondon.getTotalNumberOfSeats();
+    }
+
+    @Test
+    public void T01_EveryOperationCanBeUndoneAndRedone() {
+        List<String> states = new ArrayList<>();
+        states.add(state());
+
+        assertTrue(amsterdamParis.splitAtPosition(5, amsterdamLondon));
+        states.add(state());
+        amsterdamLondon.reverse();
+        states.add(state());
+        assertTrue(amsterdamParis.moveOneWagon(8002, amsterdamLondon));
+        states.add(state());
+        assertTrue(amsterdamLondon.insertAtPosition(2, amsterdamParis.findWagonAtPosition(3)));
+        states.add(state());
+        PassengerWagon wagon1 = new PassengerWagon(8011, 50);
+        wagon1.attachTail(new PassengerWagon(8012, 50));
+        assertTrue(amsterdamParis.insertAtFront(wagon1));
+        states.add(state());
+        amsterdamParis.setFirstWagon(amsterdamLondon.findWagonAtPosition(3));
+        states.add(state());
+
+        assertEquals(6, journal.getPosition());
+
+        for (int position = 5; position >= 0; position--) {
+            assertTrue(journal.undo());
+            assertEquals(states.get(position), state());
+        }
+        assertFalse(journal.undo());
+
+        for (int position = 1; position <= 6; position++) {
+            assertTrue(journal.redo());
+            assertEquals(states.get(position), state());
+        }
+        assertFalse(journal.redo());
+    }
+
+    @Test
+    public void T02_AFailedOperationIsNotRecorded() {
+        assertFalse(amsterdamParis.splitAtPosition(9, amsterdamLondon));
+        assertFalse(amsterdamLondon.attachToRear(new FreightWagon(9001, 50000)) && amsterdamParis.attachToRear(new FreightWagon(9002, 50000)));
+        assertFalse(amsterdamParis.moveOneWagon(8099, amsterdamLondon));
+        amsterdamLondon.reverse();
+
+        assertEquals(1, journal.getPosition()); // Only attaching the freight wagon to the empty train succeeded.
+    }
+
+    @Test
+    public void T03_ANewOperationReplacesTheUndoneOperations() {
+        amsterdamParis.splitAtPosition(4, amsterdamLondon);
+        amsterdamParis.reverse();
+        journal.undo();
+
+        assertTrue(journal.canRedo());
+        amsterdamLondon.reverse();
+
+        assertFalse(journal.canRedo());
+        assertEquals(2, journal.getNumberOfOperations());
+        journal.undo();
+        journal.undo();
+        assertEquals("[Loc-24531][Wagon-8001][Wagon-8002][Wagon-8003][Wagon-8004][Wagon-8005][Wagon-8006][Wagon-8007]" +
+                " with 7 wagons from Amsterdam to Paris", amsterdamParis.toString());
+    }
+
+    @Test
+    public void T04_AnUndoneLooseSequenceIsGivenBack() {
+        PassengerWagon wagon1 = new PassengerWagon(8011, 50);
+        PassengerWagon wagon2 = new PassengerWagon(8012, 50);
+        wagon1.attachTail(wagon2);
+
+        amsterdamLondon.attachToRear(wagon1);
+        journal.undo();
+
+        assertFalse(amsterdamLondon.hasWagons());
+        assertNull(wagon1.getPreviousWagon());
+        assertEquals(wagon2, wagon1.getNextWagon());
+        assertNull(wagon2.getNextWagon());
+    }
+
+    @Test
+    public void T05_MovingThroughARandomSessionFollowsTheSnapshots() {
+        Random random = new Random(21);
+        List<String> states = new ArrayList<>();
+        states.add(state());
+
+        while (journal.getPosition() < 200) {
+            Train from = random.nextBoolean() ? amsterdamParis : amsterdamLondon;
+            Train to = from == amsterdamParis ? amsterdamLondon : amsterdamParis;
+            int position = 1 + random.nextInt(Math.max(1, from.getNumberOfWagons()));
+
+            int before = journal.getPosition();
+            switch (random.nextInt(4)) {
+                case 0:
+                    from.splitAtPosition(position, to);
+                    break;
+                case 1:
+                    if (from.hasWagons()) from.moveOneWagon(from.findWagonAtPosition(position).getId(), to);
+                    break;
+                case 2:
+                    from.reverse();
+                    break;
+                default:
+                    if (from.hasWagons()) to.insertAtPosition(1 + random.nextInt(Math.max(1, to.getNumberOfWagons())), from.findWagonAtPosition(position));
+            }
+            if (journal.getPosition() > before) states.add(state());
+        }
+
+        assertEquals(20, journal.getNumberOfSnapshots());
+
+        for (int position : new int[]{3, 187, 95, 0, 200, 42, 41, 120}) {
+            journal.moveTo(position);
+            assertEquals(states.get(position), state(), "at position " + position);
+            for (int i = 1; i <= amsterdamParis.getNumberOfWagons(); i++) {
+                Wagon wagon = amsterdamParis.findWagonAtPosition(i);
+                assertSame(wagon, amsterdamParis.findWagonById(wagon.getId()));
+            }
+        }
+    }
+
+    @Test
+    public void T06_TheOldestOperationsCanBeTrimmed() {
+        // Trains of their own, as a train can't be tracked by two journals.
+        amsterdamParis = new Train(new Locomotive(24532, 12), "Amsterdam", "Paris");
+        for (int id = 8001; id <= 8007; id++) {
+            amsterdamParis.attachToRear(new PassengerWagon(id, 40 + id % 10));
+        }
+        amsterdamLondon = new Train(new Locomotive(63428, 12), "Amsterdam", "London");
+
+        journal = new TrainJournal(2, 4);
+        journal.track(amsterdamParis);
+        journal.track(amsterdamLondon);
+
+        List<String> states = new ArrayList<>();
+        states.add(state());
+        for (int i = 0; i < 6; i++) {
+            amsterdamParis.splitAtPosition(amsterdamParis.getNumberOfWagons(), amsterdamLondon);
+            states.add(state());
+        }
+
+        // Only the last four operations are kept, so the journal starts at the third state.
+        assertEquals(4, journal.getNumberOfOperations());
+        assertEquals(4, journal.getPosition());
+        assertEquals(3, journal.getNumberOfSnapshots());
+        journal.moveTo(0);
+        assertEquals(states.get(2), state());
+        assertFalse(journal.undo());
+
+        // Undone operations are kept when trimming, and so are the snapshots taken after them.
+        journal.moveTo(3);
+        assertEquals(states.get(5), state());
+        assertEquals(3, journal.trim(0));
+        assertEquals(0, journal.getPosition());
+        assertEquals(1, journal.getNumberOfOperations());
+        assertEquals(1, journal.getNumberOfSnapshots());
+        journal.moveTo(1);
+        assertEquals(states.get(6), state());
+        journal.moveTo(0);
+        assertEquals(states.get(5), state());
+    }
+
+    @Test
+    public void T07_WagonsAttachedAfterASnapshotCanBeAttachedAgainAfterRestoringIt() {
+        for (boolean reversedBeforeSnapshot : new boolean[]{false, true}) {
+            setup();
+            List<String> states = new ArrayList<>();
+            states.add(state());
+
+            amsterdamLondon.attachToRear(new PassengerWagon(8021, 50));
+            amsterdamLondon.attachToRear(new PassengerWagon(8022, 50));
+            if (reversedBeforeSnapshot) amsterdamLondon.reverse();
+            int snapshotPosition = journal.getPosition();
+            journal.snapshot();
+            for (int id = 8023; id <= 8025; id++) amsterdamLondon.attachToRear(new PassengerWagon(id, 50));
+            int lastPosition = journal.getPosition();
+            String lastState = state();
+
+            // Restoring the snapshot drops the wagons attached after it, which stay linked to each other.
+            Wagon wagon8023 = amsterdamLondon.findWagonById(8023);
+            journal.moveTo(snapshotPosition);
+            assertEquals(2, amsterdamLondon.getNumberOfWagons());
+            assertNull(wagon8023.getTrain());
+
+            journal.moveTo(lastPosition);
+            assertEquals(lastState, state());
+            assertTrue(ConsistValidator.isValid(amsterdamLondon));
+            journal.moveTo(0);
+            assertEquals(states.get(0), state());
+        }
+    }
+}
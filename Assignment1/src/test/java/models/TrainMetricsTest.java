@@ -0,0 +1,80 @@
+package models;
+
+import org.junit.jupiter.api.*;
+
+import static models.TrainMetrics.Operation.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestMethodOrder(MethodOrderer.MethodName.class)
+public class TrainMetricsTest {
+    Train amsterdamParis, amsterdamLondon;
+
+    @BeforeEach
+    private void setup() {
+        amsterdamParis = new Train(new Locomotive(24531, 1000), "Amsterdam", "Paris");
+        for (int id = 1; id <= 500; id++) {
+            amsterdamParis.attachToRear(new PassengerWagon(id, 40));
+        }
+        amsterdamLondon = new Train(new Locomotive(63427, 1000), "Amsterdam", "London");
+        amsterdamLondon.attachToRear(new PassengerWagon(1001, 40));
+
+        TrainMetrics.reset();
+    }
+
+    @AfterEach
+    private void tearDown() {
+        TrainMetrics.setEnabled(false);
+        TrainMetrics.reset();
+    }
+
+    @Test
+    public void T01_NothingIsCountedWhileDisabled() {
+        amsterdamParis.reverse();
+        amsterdamParis.splitAtPosition(100, amsterdamLondon);
+
+        TrainMetrics.Snapshot metrics = TrainMetrics.snapshot();
+        for (TrainMetrics.Operation operation : TrainMetrics.Operation.values()) {
+            assertEquals(0, metrics.getCalls(operation));
+            assertEquals(0, metrics.getLinkTraversals(operation));
+        }
+    }
+
+    @Test
+    public void T02_OperationsAreCountedByTheOutermostOperation() {
+        TrainMetrics.setEnabled(true);
+
+        assertTrue(amsterdamParis.splitAtPosition(400, amsterdamLondon));
+        amsterdamParis.reverse();
+        assertTrue(amsterdamParis.moveOneWagon(200, amsterdamLondon));
+
+        TrainMetrics.Snapshot metrics = TrainMetrics.snapshot();
+        assertEquals(1, metrics.getCalls(SPLIT_AT_POSITION));
+        // The attachToRear that the split is made of counts for the split.
+        assertEquals(0, metrics.getCalls(ATTACH_TO_REAR));
+        assertEquals(1, metrics.getAttaches(SPLIT_AT_POSITION));
+        assertEquals(1, metrics.getDetaches(SPLIT_AT_POSITION));
+
+        assertEquals(1, metrics.getCalls(REVERSE));
+        assertEquals(0, metrics.getLinkTraversals(REVERSE));
+        assertEquals(0, metrics.getAttaches(REVERSE) + metrics.getDetaches(REVERSE));
+
+        // Cutting the wagon out and closing the gap, then attaching it to the rear of the other train.
+        assertEquals(2, metrics.getDetaches(MOVE_ONE_WAGON));
+        assertEquals(2, metrics.getAttaches(MOVE_ONE_WAGON));
+        assertTrue(metrics.toString().contains("MOVE_ONE_WAGON"));
+    }
+
+    @Test
+    public void T03_OperationsOnALongTrainDoNotWalkIt() {
+        TrainMetrics.setEnabled(true);
+
+        for (int id = 2001; id <= 2100; id++) {
+            assertTrue(amsterdamParis.insertAtPosition(250, new PassengerWagon(id, 40)));
+        }
+
+        TrainMetrics.Snapshot metrics = TrainMetrics.snapshot();
+        assertEquals(100, metrics.getCalls(INSERT_AT_POSITION));
+        assertTrue(metrics.getLinkTraversals(INSERT_AT_POSITION) < 100 * 20, metrics.toString());
+        assertEquals(100, metrics.getAttaches(INSERT_AT_POSITION) / 2);
+    }
+}
@@ -2,6 +2,10 @@ package models;
 
 import org.junit.jupiter.api.*;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 @TestMethodOrder(MethodOrderer.MethodName.class)
@@ -331,4 +335,186 @@ public class TrainTest {
         trainWithoutWagons.reverse();
         assertEquals(0, trainWithoutWagons.getNumberOfWagons());
     }
+
+    @Test
+    public void T19_InsertAtPositionKeepsTheFrontOfTheTrain() {
+        assertTrue(freightTrain.insertAtPosition(2, freightWagon1));
+        assertEquals(5, freightTrain.getNumberOfWagons());
+        assertEquals(9001, freightTrain.findWagonAtPosition(1).getId());
+        assertEquals(9011, freightTrain.findWagonAtPosition(2).getId());
+        assertEquals(9012, freightTrain.findWagonAtPosition(3).getId());
+        assertEquals(9002, freightTrain.findWagonAtPosition(4).getId());
+        assertEquals(9003, freightTrain.getLastWagonAttached().getId());
+    }
+
+    @Test
+    public void T19_AttachingAWagonOfAnotherTrainUpdatesBothTrains() {
+        Wagon wagon = passengerTrain.findWagonAtPosition(6);
+        assertTrue(trainWithoutWagons.attachToRear(wagon));
+
+        assertEquals(5, passengerTrain.getNumberOfWagons());
+        assertEquals(8005, passengerTrain.getLastWagonAttached().getId());
+        assertEquals(2, trainWithoutWagons.getNumberOfWagons());
+        assertEquals(8007, trainWithoutWagons.getLastWagonAttached().getId());
+    }
+
+    @Test
+    public void T19_FindWagonByIdFollowsSplitsAndMoves() {
+        Train train = new Train(new Locomotive(13, 1000), "Here", "There");
+        Train otherTrain = new Train(new Locomotive(31, 1000), "There", "Here");
+        for (int id = 1; id <= 500; id++) {
+            train.attachToRear(new FreightWagon(id, id));
+        }
+
+        assertTrue(train.splitAtPosition(201, otherTrain));
+        assertTrue(otherTrain.moveOneWagon(300, train));
+
+        for (int id = 1; id <= 200; id++) {
+            assertEquals(id, train.findWagonById(id).getId());
+            assertNull(otherTrain.findWagonById(id));
+        }
+        for (int id = 201; id <= 500; id++) {
+            Train owner = id == 300 ? train : otherTrain;
+            Train nonOwner = id == 300 ? otherTrain : train;
+            assertEquals(id, owner.findWagonById(id).getId());
+            assertNull(nonOwner.findWagonById(id));
+        }
+    }
+
+    @Test
+    public void T19_PositionsFollowRandomShunting() {
+        Random random = new Random(13);
+        Train train = new Train(new Locomotive(13, 1000), "Here", "There");
+        Train otherTrain = new Train(new Locomotive(31, 1000), "There", "Here");
+        int nextId = 1;
+
+        for (int i = 0; i < 500; i++) {
+            switch (random.nextInt(5)) {
+                case 0:
+                    train.insertAtPosition(1 + random.nextInt(train.getNumberOfWagons() + 1), new FreightWagon(nextId++, 1));
+                    break;
+                case 1:
+                    train.attachToRear(new FreightWagon(nextId++, 1));
+                    break;
+                case 2:
+                    train.splitAtPosition(1 + random.nextInt(train.getNumberOfWagons() + 1), otherTrain);
+                    break;
+                case 3:
+                    if (otherTrain.hasWagons())
+                        otherTrain.moveOneWagon(otherTrain.findWagonAtPosition(1 + random.nextInt(otherTrain.getNumberOfWagons())).getId(), train);
+                    break;
+                default:
+                    train.reverse();
+            }
+
+            for (Train checkedTrain : new Train[]{train, otherTrain}) {
+                int position = 1;
+                for (Wagon wagon = checkedTrain.getFirstWagon(); wagon != null; wagon = wagon.getNextWagon()) {
+                    assertSame(wagon, checkedTrain.findWagonAtPosition(position++));
+                }
+                assertEquals(position - 1, checkedTrain.getNumberOfWagons());
+            }
+        }
+    }
+
+    @Test
+    public void T19_TotalsFollowSplitsAndMoves() {
+        assertTrue(passengerTrain.splitAtPosition(5, trainWithoutWagons));
+        assertEquals(126, passengerTrain.getTotalNumberOfSeats());
+        assertEquals(128, trainWithoutWagons.getTotalNumberOfSeats());
+
+        assertTrue(trainWithoutWagons.moveOneWagon(8007, passengerTrain));
+        assertEquals(166, passengerTrain.getTotalNumberOfSeats());
+        assertEquals(88, trainWithoutWagons.getTotalNumberOfSeats());
+
+        assertTrue(freightTrain.insertAtPosition(2, freightWagon1));
+        assertEquals(240000, freightTrain.getTotalMaxWeight());
+    }
+
+    @Test
+    public void T19_ReversedTrainCanBeSplitAndExtended() {
+        passengerTrain.reverse();
+        assertTrue(passengerTrain.splitAtPosition(6, trainWithoutWagons));
+        assertTrue(passengerTrain.attachToRear(trainWithoutWagons.getFirstWagon()));
+
+        int[] expectedIds = {8007, 8006, 8005, 8004, 8003, 8002, 8001};
+        Wagon wagon = passengerTrain.getFirstWagon();
+        for (int expectedId : expectedIds) {
+            assertEquals(expectedId, wagon.getId());
+            wagon = wagon.getNextWagon();
+        }
+        assertNull(wagon);
+        assertFalse(trainWithoutWagons.hasWagons());
+        assertEquals(8001, passengerTrain.getLastWagonAttached().getId());
+        assertEquals(8002, passengerTrain.getLastWagonAttached().getPreviousWagon().getId());
+    }
+
+    @Test
+    public void T20_AttachAllLinksTheWagonsInOrder() {
+        assertTrue(trainWithoutWagons.attachAll(List.of(passengerWagon3, new PassengerWagon(8021, 20), passengerWagon1)));
+
+        assertEquals("[Loc-29123][Wagon-8013][Wagon-8021][Wagon-8011] with 3 wagons from Amsterdam to London",
+                trainWithoutWagons.toString());
+        assertEquals(120, trainWithoutWagons.getTotalNumberOfSeats());
+        assertEquals(8011, trainWithoutWagons.getLastWagonAttached().getId());
+        assertEquals(8021, trainWithoutWagons.findWagonAtPosition(2).getId());
+        // The wagon that was linked to the attached wagons stays behind on its own.
+        assertFalse(passengerWagon2.hasPreviousWagon() || passengerWagon2.hasNextWagon());
+
+        assertTrue(freightTrain.attachAll(List.of(new FreightWagon(9021, 10000), new FreightWagon(9022, 10000))));
+        assertEquals(5, freightTrain.getNumberOfWagons());
+        assertEquals(9022, freightTrain.getLastWagonAttached().getId());
+        assertEquals(9003, freightTrain.getLastWagonAttached().getPreviousWagon().getPreviousWagon().getId());
+    }
+
+    @Test
+    public void T20_AttachAllChecksAllWagonsAtOnce() {
+        assertFalse(trainWithoutWagons.attachAll(List.of(new PassengerWagon(8021, 20), new FreightWagon(9021, 10000))));
+        assertFalse(trainWithoutWagons.attachAll(List.of(new PassengerWagon(8021, 20), new PassengerWagon(8021, 20))));
+        assertFalse(freightTrain.attachAll(List.of(new FreightWagon(9001, 10000))));
+        assertFalse(freightTrain.attachAll(List.of(passengerTrain.getFirstWagon())));
+        assertFalse(trainWithoutWagons.attachAll(List.of(passengerTrain.getLastWagonAttached())));
+
+        List<Wagon> tooMany = new ArrayList<>();
+        for (int id = 8021; id <= 8028; id++) tooMany.add(new PassengerWagon(id, 20));
+        assertFalse(trainWithoutWagons.attachAll(tooMany));
+
+        assertFalse(trainWithoutWagons.hasWagons());
+        assertEquals(3, freightTrain.getNumberOfWagons());
+        assertEquals(7, passengerTrain.getNumberOfWagons());
+    }
+
+    @Test
+    public void T21_WagonIdsStayUniqueInATrain() {
+        assertTrue(trainWithoutWagons.attachToRear(new PassengerWagon(5, 20)));
+        assertFalse(trainWithoutWagons.attachToRear(new PassengerWagon(5, 20)));
+        assertFalse(trainWithoutWagons.insertAtFront(new PassengerWagon(5, 20)));
+        assertFalse(trainWithoutWagons.insertAtPosition(1, new PassengerWagon(5, 20)));
+        assertEquals(1, trainWithoutWagons.getNumberOfWagons());
+
+        // A sequence that clashes with itself isn't attached either.
+        PassengerWagon twin = new PassengerWagon(8011, 50);
+        passengerWagon3.attachTail(twin);
+        assertFalse(trainWithoutWagons.attachToRear(passengerWagon1));
+        assertThrows(IllegalArgumentException.class, () -> trainWithoutWagons.setFirstWagon(passengerWagon1));
+        twin.detachFront();
+
+        // Splitting off the other wagons keeps the first wagon with the id findable.
+        assertTrue(trainWithoutWagons.attachToRear(passengerWagon1));
+        Train otherTrain = new Train(new Locomotive(29124, 7), "Amsterdam", "London");
+        assertTrue(trainWithoutWagons.splitAtPosition(2, otherTrain));
+        assertEquals(1, trainWithoutWagons.getNumberOfWagons());
+        assertNotNull(trainWithoutWagons.findWagonById(5));
+
+        // A wagon isn't moved to a train that has a wagon with the same id.
+        assertTrue(otherTrain.attachToRear(new PassengerWagon(5, 20)));
+        assertFalse(trainWithoutWagons.moveOneWagon(5, otherTrain));
+        assertEquals(1, trainWithoutWagons.getNumberOfWagons());
+        assertTrue(ConsistValidator.isValid(trainWithoutWagons));
+
+        // Nor is the tail of another train that has a wagon with an id of the train.
+        assertFalse(otherTrain.splitAtPosition(1, trainWithoutWagons));
+        assertEquals(4, otherTrain.getNumberOfWagons());
+        assertTrue(ConsistValidator.isValid(otherTrain));
+    }
 }
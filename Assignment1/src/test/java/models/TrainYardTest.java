@@ -0,0 +1,163 @@
+package models;
+
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestMethodOrder(MethodOrderer.MethodName.class)
+public class TrainYardTest {
+    TrainYard yard;
+    TrainYard.Consist passengerConsist, emptyConsist;
+
+    @BeforeEach
+    private void setup() {
+        yard = new TrainYard();
+        for (int id = 8001; id <= 8007; id++) {
+            yard.addPassengerWagon(id, 40);
+        }
+        yard.addFreightWagon(9001, 50000);
+
+        passengerConsist = yard.addConsist(new Locomotive(24531, 7), "Amsterdam", "Paris");
+        for (int id = 8001; id <= 8007; id++) {
+            passengerConsist.attachToRear(id);
+        }
+        emptyConsist = yard.addConsist(new Locomotive(29123, 7), "Amsterdam", "London");
+    }
+
+    @Test
+    public void T01_AYardDoesNotAcceptDuplicateIds() {
+        assertFalse(yard.addFreightWagon(8001, 1000));
+        assertEquals(8, yard.getNumberOfWagons());
+    }
+
+    @Test
+    public void T02_AConsistReportsItsWagons() {
+        assertTrue(passengerConsist.isPassengerTrain());
+        assertEquals(7, passengerConsist.getNumberOfWagons());
+        assertEquals(280, passengerConsist.getTotalNumberOfSeats());
+        assertEquals(8003, passengerConsist.getWagonIdAtPosition(3));
+        assertEquals(40, ((PassengerWagon) passengerConsist.copyWagonById(8005)).getNumberOfSeats());
+        assertNull(emptyConsist.copyWagonById(8005));
+        assertFalse(yard.isAvailable(8001));
+        assertTrue(yard.isAvailable(9001));
+    }
+
+    @Test
+    public void T03_AConsistChecksTypeAndCapacity() {
+        assertFalse(passengerConsist.attachToRear(9001));
+        assertFalse(passengerConsist.attachToRear(8001));
+        assertTrue(emptyConsist.attachToRear(9001));
+        assertFalse(passengerConsist.moveOneWagon(8001, emptyConsist));
+    }
+
+    @Test
+    public void T04_AConsistCanBeSplitReversedAndMoved() {
+        assertTrue(passengerConsist.splitAtPosition(5, emptyConsist));
+        assertEquals(4, passengerConsist.getNumberOfWagons());
+        assertEquals(3, emptyConsist.getNumberOfWagons());
+
+        emptyConsist.reverse();
+        assertEquals(8007, emptyConsist.getWagonIdAtPosition(1));
+        assertEquals(8005, emptyConsist.getWagonIdAtPosition(3));
+
+        assertTrue(emptyConsist.moveOneWagon(8006, passengerConsist));
+        assertEquals(8006, passengerConsist.getWagonIdAtPosition(5));
+        assertEquals(2, emptyConsist.getNumberOfWagons());
+        assertEquals(80, emptyConsist.getTotalNumberOfSeats());
+    }
+
+    @Test
+    public void T05_AConsistCanBeConvertedToATrain() {
+        passengerConsist.reverse();
+        Train train = passengerConsist.toTrain();
+
+        assertEquals(passengerConsist.toString(), train.toString());
+        assertEquals(280, train.getTotalNumberOfSeats());
+        assertEquals(8006, train.getFirstWagon().getNextWagon().getId());
+    }
+
+    @Test
+    public void T06_CopiedWagonsAreNotLinked() {
+        Wagon wagon = passengerConsist.copyWagonAtPosition(1);
+
+        assertEquals(8001, wagon.getId());
+        assertNull(wagon.getNextWagon());
+        assertNotSame(wagon, passengerConsist.copyWagonAtPosition(1));
+        assertNull(passengerConsist.copyWagonAtPosition(8));
+        assertThrows(IndexOutOfBoundsException.class, () -> passengerConsist.getWagonIdAtPosition(8));
+    }
+
+    @Test
+    public void T07_PositionsFollowTheShuntingOfTheConsists() {
+        yard = new TrainYard();
+        for (int id = 1; id <= 2000; id++) yard.addPassengerWagon(id, 40);
+        TrainYard.Consist west = yard.addConsist(new Locomotive(1, 2000), "Amsterdam", "Paris");
+        TrainYard.Consist east = yard.addConsist(new Locomotive(2, 2000), "Amsterdam", "Berlin");
+        List<Integer> westIds = new ArrayList<>(), eastIds = new ArrayList<>();
+        for (int id = 1; id <= 1000; id++) {
+            assertTrue(west.attachToRear(id));
+            westIds.add(id);
+            assertTrue(east.insertAtFront(1000 + id));
+            eastIds.add(0, 1000 + id);
+        }
+
+        // Compares every operation with the same operation on lists of ids.
+        Random random = new Random(7);
+        for (int step = 0; step < 2000; step++) {
+            boolean fromWest = random.nextBoolean();
+            TrainYard.Consist from = fromWest ? west : east, to = fromWest ? east : west;
+            List<Integer> fromIds = fromWest ? westIds : eastIds, toIds = fromWest ? eastIds : westIds;
+            if (fromIds.isEmpty()) continue;
+
+            int position = 1 + random.nextInt(fromIds.size());
+            switch (random.nextInt(3)) {
+                case 0:
+                    assertTrue(from.splitAtPosition(position, to));
+                    List<Integer> tail = fromIds.subList(position - 1, fromIds.size());
+                    toIds.addAll(tail);
+                    tail.clear();
+                    break;
+                case 1:
+                    assertTrue(from.moveOneWagon(fromIds.get(position - 1), to));
+                    toIds.add(fromIds.remove(position - 1));
+                    break;
+                default:
+                    from.reverse();
+                    Collections.reverse(fromIds);
+            }
+
+            for (int check = 0; check < 5 && !toIds.isEmpty(); check++) {
+                int checked = 1 + random.nextInt(toIds.size());
+                assertEquals(toIds.get(checked - 1), to.getWagonIdAtPosition(checked));
+                assertEquals(checked, to.getPositionOfWagon(toIds.get(checked - 1)));
+            }
+        }
+
+        assertEquals(0, west.getPositionOfWagon(eastIds.isEmpty() ? 0 : eastIds.get(0)));
+        assertEquals(westIds.size(), west.toTrain().getNumberOfWagons());
+    }
+
+    @Test
+    public void T08_AWagonTakesLessThanAWagonObject() {
+        yard = new TrainYard();
+        TrainYard.Consist consist = yard.addConsist(new Locomotive(1, 1_000_000), "Amsterdam", "Paris");
+        for (int id = 1; id <= 1_000_000; id++) {
+            yard.addFreightWagon(id, 50000);
+            consist.attachToRear(id);
+        }
+        consist.reverse();
+
+        // A FreightWagon object takes 56 bytes with compressed references: a 12 byte header, six links and four ints.
+        // Even with only its id, capacity and two links it would take 32 bytes.
+        double bytesPerWagon = (double) yard.getFootprint() / yard.getNumberOfWagons();
+        System.out.printf("%.1f bytes per wagon%n", bytesPerWagon);
+        assertTrue(bytesPerWagon < 32, bytesPerWagon + " bytes per wagon");
+        assertEquals(1_000_000, consist.getWagonIdAtPosition(1));
+        assertEquals(1, consist.getPositionOfWagon(1_000_000));
+    }
+}
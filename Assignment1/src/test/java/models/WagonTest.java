@@ -2,6 +2,8 @@ package models;
 
 import org.junit.jupiter.api.*;
 
+import java.time.Duration;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 @TestMethodOrder(MethodOrderer.MethodName.class)
@@ -356,4 +358,58 @@ public class WagonTest {
         assertEquals(passengerWagon1, passengerWagon2.getPreviousWagon());
         assertEquals(passengerWagon4, passengerWagon2.getNextWagon());
     }
+
+    @Test
+    public void T06_AWagonCannotBeAttachedToItsOwnTail() {
+        passengerWagon1.attachTail(passengerWagon2);
+        passengerWagon2.attachTail(passengerWagon3);
+
+        assertThrows(IllegalStateException.class, () -> passengerWagon1.reAttachTo(passengerWagon3));
+        assertThrows(IllegalStateException.class, () -> passengerWagon2.reAttachTo(passengerWagon2));
+
+        // The sequence is left unchanged.
+        assertEquals(2, passengerWagon1.getTailLength());
+        assertFalse(passengerWagon1.hasPreviousWagon());
+    }
+
+    @Test
+    public void T06_AWagonCanBeReAttachedToTheFrontOfItsOwnSequence() {
+        passengerWagon1.attachTail(passengerWagon2);
+        passengerWagon2.attachTail(passengerWagon3);
+
+        passengerWagon3.reAttachTo(passengerWagon1);
+
+        assertEquals(passengerWagon3, passengerWagon1.getNextWagon());
+        assertEquals(1, passengerWagon1.getTailLength());
+        assertFalse(passengerWagon2.hasPreviousWagon());
+    }
+
+    @Test
+    public void PERFORMANCE_ReAttachingToALongLooseSequence() {
+        int length = 500_000;
+        Wagon first = new PassengerWagon(1, 40);
+
+        // Every check stops at the end of the short tail of the attached wagon, so this takes linear time.
+        Wagon last = assertTimeout(Duration.ofSeconds(5), () -> {
+            Wagon rear = first;
+            for (int id = 2; id <= length; id++) {
+                Wagon wagon = new PassengerWagon(id, 40);
+                wagon.reAttachTo(rear);
+                rear = wagon;
+            }
+            return rear;
+        });
+        assertEquals(length - 1, first.getTailLength());
+
+        // A cycle is still found at any distance.
+        assertThrows(IllegalStateException.class, () -> first.reAttachTo(last));
+        assertThrows(IllegalStateException.class, () -> first.getNextWagon().reAttachTo(last.getPreviousWagon()));
+        assertEquals(length - 1, first.getTailLength());
+
+        // Moving the last wagon to the front of the sequence is no cycle.
+        Wagon second = first.getNextWagon();
+        last.reAttachTo(first);
+        assertEquals(last, first.getNextWagon());
+        assertFalse(second.hasPreviousWagon());
+    }
 }
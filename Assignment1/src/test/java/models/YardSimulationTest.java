@@ -0,0 +1,65 @@
+package models;
+
+import org.junit.jupiter.api.*;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestMethodOrder(MethodOrderer.MethodName.class)
+public class YardSimulationTest {
+    ExecutorService executor;
+
+    @BeforeEach
+    private void setup() {
+        executor = Executors.newFixedThreadPool(8);
+    }
+
+    @AfterEach
+    private void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void T01_LatenciesAreKeptWithinASixteenth() {
+        YardSimulation.LatencyHistogram histogram = new YardSimulation.LatencyHistogram();
+        for (long nanos = 1; nanos <= 1000; nanos++) histogram.record(nanos * 1000);
+
+        assertEquals(1000, histogram.getCount());
+        for (int percentile : new int[]{1, 50, 90, 99, 100}) {
+            long expected = percentile * 10_000L;
+            long latency = histogram.getPercentile(percentile);
+            assertTrue(latency >= expected && latency <= expected * 17 / 16, percentile + ": " + latency);
+        }
+
+        // Small latencies are kept exactly.
+        YardSimulation.LatencyHistogram small = new YardSimulation.LatencyHistogram();
+        small.record(15);
+        assertEquals(15, small.getPercentile(100));
+    }
+
+    @Test
+    public void T02_TheYardIsIntactAfterTheSimulation() throws InterruptedException {
+        YardSimulation simulation = new YardSimulation(32, 50);
+        YardSimulation.Result result = simulation.run(executor, 2000, 50);
+
+        assertEquals(2000 * 50, result.getNumberOfOperations());
+        assertEquals(List.of(), result.getViolations());
+        assertTrue(result.getLatencyPercentile(50) <= result.getLatencyPercentile(99));
+        assertTrue(result.getOperationsPerSecond() > 0);
+        System.out.println(result);
+    }
+
+    @Test
+    public void T03_BrokenTrainsAreReported() {
+        YardSimulation simulation = new YardSimulation(2, 3);
+        assertEquals(List.of(), simulation.checkInvariants());
+
+        // Cutting the links of a wagon behind the back of its train.
+        Wagon wagon = simulation.getTrain(0).findWagonAtPosition(2);
+        wagon.setNextWagon(null);
+        assertEquals(List.of("[Loc-0] is not valid: WRONG_NUMBER_OF_WAGONS"), simulation.checkInvariants());
+    }
+}
@@ -0,0 +1,73 @@
+package models;
+
+import java.util.Collection;
+import java.util.function.LongFunction;
+
+/**
+ * An index of products by their barcode, in an open-addressing hash table of primitive barcodes.
+ * Looking up a barcode probes the table directly, without creating a search product or boxing the barcode.
+ * The index is built once and never changes, so any number of threads can look up barcodes at the same time.
+ */
+public class BarcodeIndex implements LongFunction<Product> {
+    private final long[] barcodes;
+    private final Product[] products;   // a slot is empty when it holds no product
+    private final int size;
+
+    /**
+     * builds the index of the given products; of products with the same barcode only the first one is kept
+     *
+     * @param products
+     */
+    public BarcodeIndex(Collection<Product> products) {
+        // keeps the table at most half full, so the probe sequences stay short
+        int capacity = Integer.highestOneBit(Math.max(1, products.size()) * 4 - 1);
+        this.barcodes = new long[capacity];
+        this.products = new Product[capacity];
+
+        int size = 0;
+        for (Product product : products) {
+            if (product == null) continue;
+
+            int slot = slotOf(product.getBarcode());
+            while (this.products[slot] != null && barcodes[slot] != product.getBarcode()) slot = nextSlot(slot);
+
+            if (this.products[slot] == null) {
+                barcodes[slot] = product.getBarcode();
+                this.products[slot] = product;
+                size++;
+            }
+        }
+        this.size = size;
+    }
+
+    /**
+     * @param barcode
+     * @return the product with the given barcode, or null if there is no such product
+     */
+    public Product get(long barcode) {
+        for (int slot = slotOf(barcode); products[slot] != null; slot = nextSlot(slot)) {
+            if (barcodes[slot] == barcode) return products[slot];
+        }
+
+        return null;
+    }
+
+    @Override
+    public Product apply(long barcode) {
+        return get(barcode);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private int slotOf(long barcode) {
+        // spreads the barcodes over the table by multiplying with the golden ratio, and folds the high bits into the low ones
+        long hash = barcode * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & (products.length - 1);
+    }
+
+    private int nextSlot(int slot) {
+        return (slot + 1) & (products.length - 1);
+    }
+}
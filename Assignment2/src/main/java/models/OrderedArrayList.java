@@ -1,8 +1,10 @@
 package models;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Objects;
 import java.util.function.BinaryOperator;
 
 public class OrderedArrayList<E> extends ArrayList<E> implements OrderedList<E> {
@@ -107,12 +109,14 @@ public class OrderedArrayList<E> extends ArrayList<E> implements OrderedList<E>
      * If the item is not found in the sorted section, the unsorted section of the arrayList shall be searched by linear search.
      * The found item shall yield a 0 result from the this.ordening comparator, and that need not to be in agreement with the .equals test.
      * Here we follow the comparator for ordening items and for deciding on equality.
+     * The search doesn't change the list, so it is safe for concurrent readers of a list that isn't being changed.
      *
      * @param searchItem the item to be searched on the basis of comparison by this.ordening
      * @return the position index of the found item in the arrayList, or -1 if no item matches the search item.
      */
     public int indexOfByIterativeBinarySearch(E searchItem) {
-        setBinarySearchVariablesToDefault();
+        // Keeps the range in local variables, so multiple threads can search the same list at once.
+        int low = 0, high = nSorted - 1;
         int mid, compareValue;
 
         while (low <= high && high < nSorted) {
@@ -214,6 +218,51 @@ public class OrderedArrayList<E> extends ArrayList<E> implements OrderedList<E>
         return true;
     }
 
+    /**
+     * merges all items into the list, like merge does for a single item, but in one pass:
+     * the items are sorted once and then merge-joined with the sorted list, which takes O(n + m)
+     * instead of a binary search per item and a linear search of the growing unsorted section.
+     * Items that match each other are merged together first, and the list is fully sorted afterwards.
+     *
+     * @param items
+     * @param merger
+     * @return whether any new item was added to the list
+     */
+    @Override
+    public boolean mergeAll(Collection<E> items, BinaryOperator<E> merger) {
+        this.sort();
+
+        List<E> batch = new ArrayList<>(items);
+        batch.removeIf(Objects::isNull);
+        batch.sort(this.ordening);
+
+        List<E> merged = new ArrayList<>(this.size() + batch.size());
+        int i = 0, added = 0;
+        for (int b = 0; b < batch.size(); ) {
+            // folds all items of the batch that match each other into one
+            E newItem = batch.get(b++);
+            while (b < batch.size() && this.ordening.compare(batch.get(b), newItem) == 0) {
+                newItem = merger.apply(batch.get(b++), newItem);
+            }
+
+            // copies the smaller items of the list, and merges with a match if there is one
+            while (i < this.size() && this.ordening.compare(get(i), newItem) < 0) merged.add(get(i++));
+            if (i < this.size() && this.ordening.compare(get(i), newItem) == 0) {
+                merged.add(merger.apply(newItem, get(i++)));
+            } else {
+                merged.add(newItem);
+                added++;
+            }
+        }
+        while (i < this.size()) merged.add(get(i++));
+
+        super.clear();
+        super.addAll(merged);
+        this.nSorted = this.size();
+
+        return added > 0;
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
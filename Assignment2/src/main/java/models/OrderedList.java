@@ -1,5 +1,6 @@
 package models;
 
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.List;
 import java.util.function.BinaryOperator;
@@ -12,6 +13,21 @@ public interface OrderedList<E> extends List<E> {
 
     boolean merge(E item, BinaryOperator<E> merger);
 
+    /**
+     * merges all items into the list, as if merge was called for each of them
+     *
+     * @param items
+     * @param merger
+     * @return whether any new item was added to the list
+     */
+    default boolean mergeAll(Collection<E> items, BinaryOperator<E> merger) {
+        int oldSize = size();
+
+        for (E item : items) merge(item, merger);
+
+        return size() > oldSize;
+    }
+
     Comparator<? super E> getOrdening();
 
     default double aggregate(ToDoubleFunction<E> mapper) {
@@ -0,0 +1,597 @@
+package models;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.BinaryOperator;
+
+/**
+ * An ordered list in a counted B+-tree: the items are kept in leaves of up to 64 items,
+ * and every node of the tree knows how many items it holds and which item comes first.
+ * So finding an item by its position, inserting and removing it all take O(log n),
+ * without shifting the whole list like an ArrayList does.
+ * Like the OrderedArrayList, the list has a sorted section of nSorted items followed by an unsorted section.
+ * Binary searches descend the tree through the sorted section, and merge inserts a new item at its sorted position,
+ * so a sorted list stays sorted while it is merged into. Appending items in order also keeps the list sorted.
+ */
+public class OrderedTreeList<E> extends AbstractList<E> implements OrderedList<E> {
+    private static final int LEAF_CAPACITY = 64;
+    private static final int INNER_CAPACITY = 32;
+
+    protected Comparator<? super E> ordening;   // the comparator that has been used with the latest sort
+    protected int nSorted;                      // the number of items that have been ordered in the list
+    private Node root;
+
+    public OrderedTreeList() {
+        this(null);
+    }
+
+    public OrderedTreeList(Comparator<? super E> ordening) {
+        super();
+        this.ordening = ordening;
+        this.nSorted = 0;
+        this.root = new Leaf();
+    }
+
+    public Comparator<? super E> getOrdening() {
+        return this.ordening;
+    }
+
+    @Override
+    public int size() {
+        return root.size;
+    }
+
+    @Override
+    public E get(int index) {
+        checkIndex(index, size());
+
+        Node node = root;
+        while (node instanceof Inner) {
+            Inner inner = (Inner) node;
+            int c = 0;
+            while (index >= inner.children[c].size) index -= inner.children[c++].size;
+            node = inner.children[c];
+        }
+        return (E) ((Leaf) node).items[index];
+    }
+
+    @Override
+    public E set(int index, E element) {
+        checkIndex(index, size());
+
+        // the sorted section ends before a replacement that is out of order
+        if (index < nSorted && !fitsAt(index, element, true)) nSorted = index;
+
+        return (E) root.set(index, element);
+    }
+
+    @Override
+    public void add(int index, E element) {
+        checkIndex(index, size() + 1);
+
+        // the sorted section grows if the element fits in between its neighbours, and ends before it otherwise
+        boolean fits = index <= nSorted && fitsAt(index, element, false);
+
+        Node sibling = root.insert(index, element);
+        if (sibling != null) root = new Inner(root, sibling);
+        modCount++;
+
+        if (fits) nSorted++;
+        else if (index < nSorted) nSorted = index;
+    }
+
+    @Override
+    public E remove(int index) {
+        checkIndex(index, size());
+
+        E element = (E) root.remove(index);
+        while (root instanceof Inner && ((Inner) root).count == 1) root = ((Inner) root).children[0];
+        modCount++;
+
+        // the sorted section stays sorted without one of its items
+        if (index < nSorted) nSorted--;
+
+        return element;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        int index = indexOf(o);
+        if (index < 0) return false;
+
+        remove(index);
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        root = new Leaf();
+        modCount++;
+        this.nSorted = 0;
+    }
+
+    @Override
+    public void sort(Comparator<? super E> c) {
+        Object[] items = toArray();
+        Arrays.sort(items, (Comparator<Object>) c);
+
+        root = build(items);
+        modCount++;
+        this.ordening = c;
+        this.nSorted = this.size();
+    }
+
+    @Override
+    public void sort() {
+        if (this.nSorted < this.size()) {
+            this.sort(this.ordening);
+        }
+    }
+
+    @Override
+    public int indexOf(Object item) {
+        if (item != null) {
+            return indexOfByBinarySearch((E) item);
+        } else {
+            return -1;
+        }
+    }
+
+    /**
+     * finds the position of the searchItem by a binary search that descends the tree through the sorted section,
+     * using the this.ordening comparator for comparison and equality test.
+     * If the item is not found in the sorted section, the unsorted section shall be searched by linear search.
+     *
+     * @param searchItem the item to be searched on the basis of comparison by this.ordening
+     * @return the position index of the found item in the list, or -1 if no item matches the search item.
+     */
+    @Override
+    public int indexOfByBinarySearch(E searchItem) {
+        if (searchItem == null) return -1;
+
+        int index = lowerBound(searchItem);
+        if (index < nSorted && this.ordening.compare(searchItem, get(index)) == 0) return index;
+
+        return linearSearch(searchItem);
+    }
+
+    /**
+     * finds a match of newItem in the list and applies the merger operator with the newItem to that match
+     * If no match is found in the list, the newItem is inserted at its position in the sorted section.
+     *
+     * @param newItem
+     * @param merger  a function that takes two items and returns an item that contains the merged content of
+     *                the two items according to some merging rule.
+     * @return whether a new item was added to the list or not
+     */
+    @Override
+    public boolean merge(E newItem, BinaryOperator<E> merger) {
+        if (newItem == null) return false;
+
+        int index = lowerBound(newItem);
+        if (index < nSorted && this.ordening.compare(newItem, get(index)) == 0) {
+            set(index, merger.apply(newItem, get(index)));
+            return false;
+        }
+
+        int matchedItemIndex = linearSearch(newItem);
+        if (matchedItemIndex >= 0) {
+            set(matchedItemIndex, merger.apply(newItem, get(matchedItemIndex)));
+            return false;
+        }
+
+        add(index, newItem);
+        return true;
+    }
+
+    /**
+     * sorts the list first, so all items are merged at their sorted position and the list ends up fully sorted
+     */
+    @Override
+    public boolean mergeAll(Collection<E> items, BinaryOperator<E> merger) {
+        this.sort();
+
+        return OrderedList.super.mergeAll(items, merger);
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new LeafIterator(0);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Ordered TreeList:\n");
+        int i = 0;
+        for (E item : this) {
+            sb.append(item + "\n");
+            if (i++ == nSorted - 1)
+                sb.append("End of sorted segment\n");
+        }
+        sb.append("\n");
+
+        return sb.toString();
+    }
+
+    /**
+     * @return the first position in the sorted section with an item that is not smaller than the searchItem,
+     * or nSorted if there is no such item
+     */
+    private int lowerBound(E searchItem) {
+        int base = 0, limit = nSorted;   // the sorted items of the current node are at positions base .. base + limit
+
+        Node node = root;
+        while (node instanceof Inner && limit > 0) {
+            Inner inner = (Inner) node;
+
+            // finds the children that hold sorted items, and the last of those that starts below the searchItem
+            int nChildren = 0;
+            for (int start = 0; nChildren < inner.count && start < limit; nChildren++) start += inner.children[nChildren].size;
+            int c = lastBelow(searchItem, inner.firstItems, nChildren);
+            if (c < 0) return base;
+
+            for (int i = 0; i < c; i++) {
+                base += inner.children[i].size;
+                limit -= inner.children[i].size;
+            }
+            node = inner.children[c];
+            limit = Math.min(limit, node.size);
+        }
+        if (limit <= 0) return base;
+
+        return base + lastBelow(searchItem, ((Leaf) node).items, limit) + 1;
+    }
+
+    /**
+     * @return the last index below n of the ordered items that is smaller than the searchItem, or -1 if there is none
+     */
+    private int lastBelow(E searchItem, Object[] items, int n) {
+        int low = 0, high = n - 1;
+        while (low <= high) {
+            int mid = low + (high - low) / 2;
+            if (this.ordening.compare((E) items[mid], searchItem) < 0) low = mid + 1;
+            else high = mid - 1;
+        }
+        return high;
+    }
+
+    private int linearSearch(E searchItem) {
+        Iterator<E> items = new LeafIterator(nSorted);
+        for (int i = nSorted; items.hasNext(); i++) {
+            if (this.ordening.compare(searchItem, items.next()) == 0) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * @return whether the element is in order with the items before and at the index,
+     * or with the items around the index if the element replaces the item at the index
+     */
+    private boolean fitsAt(int index, E element, boolean replacing) {
+        if (this.ordening == null) return false;
+
+        int next = replacing ? index + 1 : index;
+        return (index == 0 || this.ordening.compare(get(index - 1), element) <= 0) &&
+                (next >= nSorted || this.ordening.compare(element, get(next)) <= 0);
+    }
+
+    private static void checkIndex(int index, int length) {
+        if (index < 0 || index >= length) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + (length));
+    }
+
+    /**
+     * builds a tree of evenly filled nodes from the items, in their order
+     */
+    private static Node build(Object[] items) {
+        int nLeaves = Math.max(1, (items.length + LEAF_CAPACITY - 1) / LEAF_CAPACITY);
+        Node[] level = new Node[nLeaves];
+        for (int l = 0; l < nLeaves; l++) {
+            Leaf leaf = new Leaf();
+            int from = (int) ((long) items.length * l / nLeaves), to = (int) ((long) items.length * (l + 1) / nLeaves);
+            System.arraycopy(items, from, leaf.items, 0, to - from);
+            leaf.count = leaf.size = to - from;
+            level[l] = leaf;
+        }
+
+        while (level.length > 1) {
+            int nParents = (level.length + INNER_CAPACITY - 1) / INNER_CAPACITY;
+            Node[] parents = new Node[nParents];
+            for (int p = 0; p < nParents; p++) {
+                Inner inner = new Inner();
+                int from = level.length * p / nParents, to = level.length * (p + 1) / nParents;
+                for (int c = from; c < to; c++) inner.insertChild(inner.count, level[c]);
+                parents[p] = inner;
+            }
+            level = parents;
+        }
+        return level[0];
+    }
+
+    private abstract static class Node {
+        int size;   // the number of items in the subtree of this node
+
+        abstract int count();
+
+        abstract Object first();
+
+        abstract Object set(int index, Object item);
+
+        /**
+         * inserts the item at the index in the subtree
+         *
+         * @return the new sibling that takes the upper half of this node if it was full, or null
+         */
+        abstract Node insert(int index, Object item);
+
+        abstract Object remove(int index);
+    }
+
+    private static class Leaf extends Node {
+        final Object[] items = new Object[LEAF_CAPACITY];
+        int count;
+
+        @Override
+        int count() {
+            return count;
+        }
+
+        @Override
+        Object first() {
+            return items[0];
+        }
+
+        @Override
+        Object set(int index, Object item) {
+            Object old = items[index];
+            items[index] = item;
+            return old;
+        }
+
+        @Override
+        Node insert(int index, Object item) {
+            Leaf sibling = null;
+            Leaf leaf = this;
+            if (count == LEAF_CAPACITY) {
+                sibling = new Leaf();
+                sibling.count = sibling.size = count / 2;
+                System.arraycopy(items, count - sibling.count, sibling.items, 0, sibling.count);
+                Arrays.fill(items, count - sibling.count, count, null);
+                count = size = count - sibling.count;
+
+                if (index > count) {
+                    index -= count;
+                    leaf = sibling;
+                }
+            }
+
+            System.arraycopy(leaf.items, index, leaf.items, index + 1, leaf.count - index);
+            leaf.items[index] = item;
+            leaf.count++;
+            leaf.size++;
+            return sibling;
+        }
+
+        @Override
+        Object remove(int index) {
+            Object old = items[index];
+            System.arraycopy(items, index + 1, items, index, count - index - 1);
+            items[--count] = null;
+            size--;
+            return old;
+        }
+
+        /**
+         * evens out the items of this leaf and its right neighbour, or moves them all to this leaf if they fit
+         */
+        void balanceWith(Leaf right) {
+            int total = count + right.count;
+            int target = total <= LEAF_CAPACITY ? total : total / 2;
+
+            if (target > count) {
+                int moved = target - count;
+                System.arraycopy(right.items, 0, items, count, moved);
+                System.arraycopy(right.items, moved, right.items, 0, right.count - moved);
+                Arrays.fill(right.items, right.count - moved, right.count, null);
+            } else {
+                int moved = count - target;
+                System.arraycopy(right.items, 0, right.items, moved, right.count);
+                System.arraycopy(items, target, right.items, 0, moved);
+                Arrays.fill(items, target, count, null);
+            }
+            count = size = target;
+            right.count = right.size = total - target;
+        }
+    }
+
+    private static class Inner extends Node {
+        final Node[] children = new Node[INNER_CAPACITY];
+        final Object[] firstItems = new Object[INNER_CAPACITY];   // the first item in the subtree of each child
+        int count;
+
+        Inner() {
+        }
+
+        Inner(Node left, Node right) {
+            insertChild(0, left);
+            insertChild(1, right);
+        }
+
+        @Override
+        int count() {
+            return count;
+        }
+
+        @Override
+        Object first() {
+            return firstItems[0];
+        }
+
+        @Override
+        Object set(int index, Object item) {
+            int c = childAt(index, false);
+            Object old = children[c].set(index - startOf(c), item);
+            firstItems[c] = children[c].first();
+            return old;
+        }
+
+        @Override
+        Node insert(int index, Object item) {
+            int c = childAt(index, true);
+            Node split = children[c].insert(index - startOf(c), item);
+            firstItems[c] = children[c].first();
+            size++;
+            if (split == null) return null;
+
+            // the items of the split off child are counted again when it is inserted
+            size -= split.size;
+            if (count < INNER_CAPACITY) {
+                insertChild(c + 1, split);
+                return null;
+            }
+
+            // splits this node in halves, and puts the new child into the half it belongs to
+            Inner sibling = new Inner();
+            int half = count / 2;
+            for (int i = half; i < count; i++) sibling.insertChild(sibling.count, children[i]);
+            while (count > half) removeChild(count - 1);
+
+            if (c + 1 <= count) insertChild(c + 1, split);
+            else sibling.insertChild(c + 1 - count, split);
+            return sibling;
+        }
+
+        @Override
+        Object remove(int index) {
+            int c = childAt(index, false);
+            Object old = children[c].remove(index - startOf(c));
+            firstItems[c] = children[c].first();
+            size--;
+
+            // a child that has become small is merged with or evened out against a neighbour
+            int minimum = children[c] instanceof Leaf ? LEAF_CAPACITY / 4 : INNER_CAPACITY / 4;
+            if (children[c].count() < minimum && count > 1) {
+                int left = c > 0 ? c - 1 : c;
+                if (children[left] instanceof Leaf) ((Leaf) children[left]).balanceWith((Leaf) children[left + 1]);
+                else ((Inner) children[left]).balanceWith((Inner) children[left + 1]);
+
+                firstItems[left] = children[left].first();
+                if (children[left + 1].count() == 0) removeChild(left + 1);
+                else firstItems[left + 1] = children[left + 1].first();
+            }
+            return old;
+        }
+
+        /**
+         * evens out the children of this node and its right neighbour, or moves them all to this node if they fit
+         */
+        void balanceWith(Inner right) {
+            int total = count + right.count;
+            int target = total <= INNER_CAPACITY ? total : total / 2;
+
+            while (count < target) {
+                insertChild(count, right.children[0]);
+                right.removeChild(0);
+            }
+            while (count > target) {
+                right.insertChild(0, children[count - 1]);
+                removeChild(count - 1);
+            }
+        }
+
+        /**
+         * @return the child that holds the index, or the child at whose end an item can be inserted at the index
+         */
+        int childAt(int index, boolean inserting) {
+            int c = 0;
+            while (c < count - 1 && (inserting ? index > children[c].size : index >= children[c].size)) {
+                index -= children[c++].size;
+            }
+            return c;
+        }
+
+        int startOf(int c) {
+            int start = 0;
+            for (int i = 0; i < c; i++) start += children[i].size;
+            return start;
+        }
+
+        void insertChild(int at, Node child) {
+            System.arraycopy(children, at, children, at + 1, count - at);
+            System.arraycopy(firstItems, at, firstItems, at + 1, count - at);
+            children[at] = child;
+            firstItems[at] = child.first();
+            count++;
+            size += child.size;
+        }
+
+        void removeChild(int at) {
+            size -= children[at].size;
+            System.arraycopy(children, at + 1, children, at, count - at - 1);
+            System.arraycopy(firstItems, at + 1, firstItems, at, count - at - 1);
+            count--;
+            children[count] = null;
+            firstItems[count] = null;
+        }
+    }
+
+    /**
+     * walks along the items leaf by leaf, and only descends the tree again to find the next leaf
+     */
+    private class LeafIterator implements Iterator<E> {
+        private int next;            // the index of the next item
+        private int lastReturned = -1;
+        private Leaf leaf;           // the leaf of the next item, or null if it has to be found
+        private int leafStart;       // the index of the first item in the leaf
+        private int expectedModCount = modCount;
+
+        LeafIterator(int next) {
+            this.next = next;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < size();
+        }
+
+        @Override
+        public E next() {
+            if (modCount != expectedModCount) throw new ConcurrentModificationException();
+            if (!hasNext()) throw new NoSuchElementException();
+
+            if (leaf == null || next >= leafStart + leaf.count) findLeaf();
+            lastReturned = next;
+            return (E) leaf.items[next++ - leafStart];
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned < 0) throw new IllegalStateException();
+            if (modCount != expectedModCount) throw new ConcurrentModificationException();
+
+            OrderedTreeList.this.remove(lastReturned);
+            next = lastReturned;
+            lastReturned = -1;
+            leaf = null;
+            expectedModCount = modCount;
+        }
+
+        private void findLeaf() {
+            int index = next;
+            Node node = root;
+            while (node instanceof Inner) {
+                Inner inner = (Inner) node;
+                int c = inner.childAt(index, false);
+                index -= inner.startOf(c);
+                node = inner.children[c];
+            }
+            leaf = (Leaf) node;
+            leafStart = next - index;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package models;
 
 import java.util.List;
+import java.util.function.LongFunction;
 
 public class Purchase {
 
@@ -23,6 +24,34 @@ public class Purchase {
      * or null if the textLine is corrupt or incomplete
      */
     public static Purchase fromLine(String textLine, List<Product> products) {
+        return fromLine(textLine, barcode -> {
+            int index = products.indexOf(new Product(barcode));
+            return index <= -1 ? null : products.get(index);
+        });
+    }
+
+    /**
+     * parses purchase summary information from a textLine with format: barcode, amount
+     * and finds the product in the given index, without creating a search product
+     *
+     * @param textLine
+     * @param products an index of products by barcode
+     * @return a new Purchase instance with the provided information
+     * or null if the textLine is corrupt or incomplete
+     */
+    public static Purchase fromLine(String textLine, BarcodeIndex products) {
+        return fromLine(textLine, (LongFunction<Product>) products);
+    }
+
+    /**
+     * parses purchase summary information from a textLine with format: barcode, amount
+     *
+     * @param textLine
+     * @param productFinder a function that finds the product of a barcode, or gives null if there is no such product
+     * @return a new Purchase instance with the provided information
+     * or null if the textLine is corrupt or incomplete
+     */
+    private static Purchase fromLine(String textLine, LongFunction<Product> productFinder) {
         String[] splittedLine = textLine.split(DELIMITER);
 
         //Returns if the given String isn't valid.
@@ -36,14 +65,14 @@ public class Purchase {
         long barcode = Long.parseLong(splittedLine[0]);
         int count = Integer.parseInt(splittedLine[1]);
 
-        int index = products.indexOf(new Product(barcode));
-        if (index <= -1) {
+        Product product = productFinder.apply(barcode);
+        if (product == null) {
             //Commented out error so the main log is the same as the assignment.
             //System.err.printf("barcode found in textLine of purchase [%s] is not found in the productList\n", textLine);
             return null;
         }
 
-        return new Purchase(products.get(index), count);
+        return new Purchase(product, count);
     }
 
     /**
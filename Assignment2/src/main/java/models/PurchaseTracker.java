@@ -2,10 +2,15 @@ package models;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Scanner;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 import java.util.function.Function;
 
 public class PurchaseTracker {
@@ -13,10 +18,12 @@ public class PurchaseTracker {
 
     private OrderedList<Product> products;        // the reference list of all Products available from the SuperMarket chain
     private OrderedList<Purchase> purchases;      // the aggregated volumes of all purchases of all products across all branches
+    private BarcodeIndex productIndex;            // the products by barcode, for resolving the barcodes of purchases
 
     public PurchaseTracker() {
         products = new OrderedArrayList<>(Comparator.comparing(Product::getBarcode));
         purchases = new OrderedArrayList<>(Comparator.comparing(Purchase::getBarcode));
+        productIndex = new BarcodeIndex(products);
     }
 
     /**
@@ -62,12 +69,13 @@ public class PurchaseTracker {
         this.products.clear();
 
         // load all products from the text file
-        importItemsFromFile(this.products,
-                PurchaseTracker.class.getResource(resourceName).getPath(),
-                Product::fromLine);
+        VaultFileReader.importProductsFromFile(this.products,
+                PurchaseTracker.class.getResource(resourceName).getPath());
 
         // sort the products for efficient later retrieval
         this.products.sort();
+        // index the products by barcode once, for resolving the barcodes of all purchases
+        this.productIndex = new BarcodeIndex(this.products);
 
         System.out.printf("Imported %d products from %s.\n", products.size(), resourceName);
     }
@@ -86,6 +94,103 @@ public class PurchaseTracker {
         System.out.printf("Accumulated purchases of %d products from files in %s.\n", this.purchases.size(), resourceName);
     }
 
+    /**
+     * imports and merges all raw purchase data of all branches from the vault, like importPurchasesFromVault,
+     * but parses the files concurrently on the given pool.
+     * Every file is accumulated into its own partial result by barcode, and the partial results are combined
+     * pairwise up the directory tree, so no thread ever waits for a shared list.
+     * The resulting purchases are the same as those of importPurchasesFromVault, in the same order.
+     *
+     * @param resourceName
+     * @param pool         the pool that parses the files
+     */
+    public void importPurchasesFromVault(String resourceName, ForkJoinPool pool) {
+        this.purchases.clear();
+
+        File vault = new File(PurchaseTracker.class.getResource(resourceName).getPath());
+        Map<Long, Purchase> purchasesByBarcode = pool.invoke(new VaultTask(new File[]{vault}, 0, 1));
+
+        this.purchases.addAll(purchasesByBarcode.values());
+        this.purchases.sort();
+
+        System.out.printf("Accumulated purchases of %d products from files in %s.\n", this.purchases.size(), resourceName);
+    }
+
+    /**
+     * accumulates the purchases of a range of files and directories of the vault, by splitting the range in halves
+     */
+    private class VaultTask extends RecursiveTask<Map<Long, Purchase>> {
+        private final File[] files;
+        private final int from, to;
+
+        private VaultTask(File[] files, int from, int to) {
+            this.files = files;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Map<Long, Purchase> compute() {
+            if (to - from > 1) {
+                int middle = (from + to) / 2;
+                VaultTask firstHalf = new VaultTask(files, from, middle);
+                firstHalf.fork();
+                Map<Long, Purchase> secondPurchases = new VaultTask(files, middle, to).compute();
+
+                return combinePurchases(firstHalf.join(), secondPurchases);
+            }
+
+            File file = files[from];
+            if (file.isDirectory()) {
+                File[] filesInDirectory = Objects.requireNonNullElse(file.listFiles(), new File[0]);
+                if (filesInDirectory.length == 0) return new HashMap<>();
+
+                return new VaultTask(filesInDirectory, 0, filesInDirectory.length).compute();
+            } else if (file.getName().matches(PURCHASE_FILE_PATTERN)) {
+                return accumulatePurchasesFromFile(file.getAbsolutePath());
+            }
+
+            return new HashMap<>();
+        }
+    }
+
+    /**
+     * imports the raw purchase data of a single file and adds up the counts of purchases with the same barcode
+     *
+     * @param filePath
+     * @return the purchases of the file by barcode
+     */
+    private Map<Long, Purchase> accumulatePurchasesFromFile(String filePath) {
+        List<Purchase> filePurchases = new ArrayList<>();
+        VaultFileReader.importPurchasesFromFile(filePurchases, filePath, productIndex);
+
+        Map<Long, Purchase> purchasesByBarcode = new HashMap<>();
+        for (Purchase purchase : filePurchases) {
+            purchasesByBarcode.merge(purchase.getBarcode(), purchase, PurchaseTracker::addCounts);
+        }
+
+        return purchasesByBarcode;
+    }
+
+    /**
+     * combines two partial results, by merging the smaller one into the larger one
+     *
+     * @return the combined purchases by barcode
+     */
+    private static Map<Long, Purchase> combinePurchases(Map<Long, Purchase> purchases, Map<Long, Purchase> otherPurchases) {
+        if (purchases.size() < otherPurchases.size()) return combinePurchases(otherPurchases, purchases);
+
+        for (Purchase purchase : otherPurchases.values())
+            purchases.merge(purchase.getBarcode(), purchase, PurchaseTracker::addCounts);
+
+        return purchases;
+    }
+
+    private static Purchase addCounts(Purchase purchase, Purchase otherPurchase) {
+        purchase.addCount(otherPurchase.getCount());
+        return purchase;
+    }
+
     /**
      * traverses the purchases vault recursively and processes every data file that it finds
      *
@@ -152,15 +257,10 @@ public class PurchaseTracker {
         // create a temporary ordered list for the additional purchases, ordered by same comparator as the main list
         OrderedList<Purchase> newPurchases = new OrderedArrayList<>(this.purchases.getOrdening());
 
-        importItemsFromFile(newPurchases, filePath, s -> Purchase.fromLine(s,products));
-
-        // re-sort the accumulated purchases for efficient searching
-        this.purchases.sort();
-
-        // merge each new purchase into the purchases list.
-        for (Purchase purchase : newPurchases)
-            this.purchases.merge(purchase,(p1,p2) -> { p1.addCount(p2.getCount()); return p1;});
+        VaultFileReader.importPurchasesFromFile(newPurchases, filePath, productIndex);
 
+        // merge all new purchases into the purchases list in a single pass, which keeps it sorted
+        this.purchases.mergeAll(newPurchases, (p1,p2) -> { p1.addCount(p2.getCount()); return p1;});
     }
 
     public List<Product> getProducts() {
@@ -0,0 +1,198 @@
+package models;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Reads product and purchase files of the vault by parsing their bytes directly into primitives,
+ * instead of scanning lines into Strings and splitting those by a regular expression.
+ * Only the title of a product becomes a String (decoded as UTF-8).
+ * A file is read in one go into a buffer that every thread keeps for the next file, large files are memory-mapped.
+ * The lines have the same format as for Product.fromLine and Purchase.fromLine,
+ * lines that are corrupt or incomplete are skipped.
+ */
+public class VaultFileReader {
+    private static final int MAPPING_THRESHOLD = 1 << 20;   // files of this size and larger are memory-mapped
+    private static final ThreadLocal<ByteBuffer> buffers = ThreadLocal.withInitial(() -> ByteBuffer.allocate(1 << 16));
+
+    private static final long[] POWERS_OF_TEN = {1, 10, 100, 1_000, 10_000, 100_000, 1_000_000, 10_000_000,
+            100_000_000, 1_000_000_000, 10_000_000_000L, 100_000_000_000L, 1_000_000_000_000L, 10_000_000_000_000L,
+            100_000_000_000_000L, 1_000_000_000_000_000L};
+
+    private VaultFileReader() {
+    }
+
+    /**
+     * reads all products from a text file with lines of format: barcode, title, price
+     *
+     * @param products the list to which the products shall be added
+     * @param filePath the file path of the source text file
+     */
+    public static void importProductsFromFile(List<Product> products, String filePath) {
+        ByteBuffer buffer = read(filePath);
+
+        for (int start = 0, end; start < buffer.limit(); start = end + 1) {
+            end = lineEnd(buffer, start);
+            int contentEnd = contentEnd(buffer, start, end);
+
+            int titleStart = delimiter(buffer, start, contentEnd) + 2;
+            int priceStart = titleStart < 2 ? 1 : delimiter(buffer, titleStart, contentEnd) + 2;
+            if (priceStart < 2) {
+                if (contentEnd > start) {
+                    System.err.printf("textLine [%s] is corrupted or incomplete for a Product", string(buffer, start, contentEnd));
+                }
+                continue;
+            }
+
+            // any field after the price is ignored, like Product.fromLine does
+            int priceEnd = delimiter(buffer, priceStart, contentEnd);
+            long barcode = parseLong(buffer, start, titleStart - 2);
+            double price = parseDouble(buffer, priceStart, priceEnd < 0 ? contentEnd : priceEnd);
+            if (barcode < 0 || Double.isNaN(price)) continue;
+
+            products.add(new Product(barcode, string(buffer, titleStart, priceStart - 2), price));
+        }
+    }
+
+    /**
+     * reads all purchases from a text file with lines of format: barcode, amount
+     * Purchases of barcodes that are not in the index are skipped.
+     *
+     * @param purchases the list to which the purchases shall be added
+     * @param filePath  the file path of the source text file
+     * @param products  the index of the products that can be purchased
+     */
+    public static void importPurchasesFromFile(List<Purchase> purchases, String filePath, BarcodeIndex products) {
+        ByteBuffer buffer = read(filePath);
+
+        for (int start = 0, end; start < buffer.limit(); start = end + 1) {
+            end = lineEnd(buffer, start);
+            int contentEnd = contentEnd(buffer, start, end);
+
+            int countStart = delimiter(buffer, start, contentEnd) + 2;
+            if (countStart < 2 || delimiter(buffer, countStart, contentEnd) >= 0) continue;
+
+            // a negative amount corrects earlier purchases
+            boolean negative = countStart < contentEnd && buffer.get(countStart) == '-';
+            long barcode = parseLong(buffer, start, countStart - 2);
+            long count = parseLong(buffer, negative ? countStart + 1 : countStart, contentEnd);
+            if (barcode < 0 || count < 0 || count > Integer.MAX_VALUE) continue;
+
+            Product product = products.get(barcode);
+            if (product != null) purchases.add(new Purchase(product, negative ? (int) -count : (int) count));
+        }
+    }
+
+    /**
+     * reads a whole file into the buffer of the current thread, or maps it into memory if it is large
+     *
+     * @param filePath
+     * @return the content of the file, from position 0 up to the limit of the buffer
+     */
+    private static ByteBuffer read(String filePath) {
+        try (FileChannel channel = FileChannel.open(Path.of(filePath), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size >= MAPPING_THRESHOLD) return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            ByteBuffer buffer = buffers.get();
+            if (buffer.capacity() < size) {
+                buffer = ByteBuffer.allocate(Integer.highestOneBit((int) size) * 2);
+                buffers.set(buffer);
+            }
+
+            buffer.clear();
+            while (channel.read(buffer) > 0) ;
+            return buffer.flip();
+        } catch (IOException e) {
+            throw new RuntimeException("IOException on path: " + filePath);
+        }
+    }
+
+    /**
+     * @return the index of the newline that ends the line starting at the given index, or the limit of the buffer
+     */
+    private static int lineEnd(ByteBuffer buffer, int start) {
+        int end = start;
+        while (end < buffer.limit() && buffer.get(end) != '\n') end++;
+        return end;
+    }
+
+    /**
+     * @return the end of the line without a carriage return at its end
+     */
+    private static int contentEnd(ByteBuffer buffer, int start, int end) {
+        return end > start && buffer.get(end - 1) == '\r' ? end - 1 : end;
+    }
+
+    /**
+     * @return the index of the first ", " between from and to, or -1 if there is none
+     */
+    private static int delimiter(ByteBuffer buffer, int from, int to) {
+        for (int i = from; i < to - 1; i++) {
+            if (buffer.get(i) == ',' && buffer.get(i + 1) == ' ') return i;
+        }
+        return -1;
+    }
+
+    /**
+     * parses a non-negative whole number of at most 18 digits
+     *
+     * @return the number, or -1 if the bytes are not a number
+     */
+    private static long parseLong(ByteBuffer buffer, int from, int to) {
+        if (from >= to || to - from > 18) return -1;
+
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) return -1;
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * parses a decimal number like 4.25 from its digits, which gives exactly the same double as Double.parseDouble,
+     * since the digits and the power of ten are both exact and divided only once
+     * Other notations are parsed by Double.parseDouble.
+     *
+     * @return the number, or NaN if the bytes are not a number
+     */
+    private static double parseDouble(ByteBuffer buffer, int from, int to) {
+        long digits = 0;
+        int numberOfDigits = 0, fractionDigits = -1;
+        for (int i = from; i < to; i++) {
+            byte b = buffer.get(i);
+            if (b == '.' && fractionDigits < 0) fractionDigits = 0;
+            else if (b >= '0' && b <= '9' && numberOfDigits < 15) {
+                digits = digits * 10 + (b - '0');
+                numberOfDigits++;
+                if (fractionDigits >= 0) fractionDigits++;
+            } else return parseDoubleFromString(string(buffer, from, to));
+        }
+
+        if (numberOfDigits == 0) return Double.NaN;
+        return fractionDigits <= 0 ? digits : digits / (double) POWERS_OF_TEN[fractionDigits];
+    }
+
+    private static double parseDoubleFromString(String text) {
+        try {
+            return Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    private static String string(ByteBuffer buffer, int from, int to) {
+        if (buffer.hasArray()) return new String(buffer.array(), buffer.arrayOffset() + from, to - from, StandardCharsets.UTF_8);
+
+        byte[] bytes = new byte[to - from];
+        buffer.duplicate().position(from).get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
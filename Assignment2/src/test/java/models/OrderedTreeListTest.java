@@ -0,0 +1,70 @@
+package models;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OrderedTreeListTest extends ProductsListTest {
+
+    @Override
+    protected OrderedList<Product> newProductsList(Comparator<Product> ordening) {
+        return new OrderedTreeList<>(ordening);
+    }
+
+    @Test
+    public void positionalChangesMatchAnArrayList() {
+        OrderedList<Integer> tree = new OrderedTreeList<>(Comparator.naturalOrder());
+        List<Integer> expected = new ArrayList<>();
+        Random random = new Random(25);
+
+        for (int i = 0; i < 50_000; i++) {
+            int index = random.nextInt(expected.size() + 1);
+            switch (expected.isEmpty() ? 0 : random.nextInt(4)) {
+                case 0:
+                case 1:
+                    tree.add(index, i);
+                    expected.add(index, i);
+                    break;
+                case 2:
+                    index = Math.min(index, expected.size() - 1);
+                    assertEquals(expected.remove(index), tree.remove(index));
+                    break;
+                default:
+                    index = Math.min(index, expected.size() - 1);
+                    assertEquals(expected.set(index, -i), tree.set(index, -i));
+            }
+        }
+
+        assertEquals(expected, tree);
+        for (int i = 0; i < expected.size(); i += 97) assertEquals(expected.get(i), tree.get(i));
+
+        // removing almost everything shrinks the tree back again
+        while (tree.size() > 10) tree.remove(random.nextInt(tree.size()));
+        tree.removeIf(item -> item % 2 == 0);
+        tree.sort();
+        for (int i = 1; i < tree.size(); i++) assertTrue(tree.get(i - 1) <= tree.get(i));
+    }
+
+    @Test
+    public void mergingKeepsTheListSorted() {
+        OrderedList<Purchase> purchases = new OrderedTreeList<>(Comparator.comparing(Purchase::getBarcode));
+        Random random = new Random(25);
+
+        for (int i = 0; i < 20_000; i++) {
+            Product product = new Product(random.nextInt(5_000), "", 1.00);
+            purchases.merge(new Purchase(product, 1), (p1, p2) -> { p2.addCount(p1.getCount()); return p2; });
+        }
+
+        assertEquals(20_000, purchases.aggregate(Purchase::getCount));
+        for (int index = 0; index < purchases.size(); index++) {
+            assertEquals(index, purchases.indexOfByBinarySearch(purchases.get(index)));
+            if (index > 0) assertTrue(purchases.get(index - 1).getBarcode() < purchases.get(index).getBarcode());
+        }
+        assertEquals(-1, purchases.indexOfByBinarySearch(new Purchase(new Product(-1), 0)));
+    }
+}
@@ -4,9 +4,11 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.util.Comparator;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class ProductsListTest {
 
@@ -15,7 +17,7 @@ public class ProductsListTest {
 
     @BeforeEach
     private void setup() {
-        products = new OrderedArrayList<Product>(Comparator.comparing(Product::getBarcode));
+        products = newProductsList(Comparator.comparing(Product::getBarcode));
         PurchaseTracker.importItemsFromFile(products,
                 ProductsListTest.class.getResource("/products12.txt").getPath(),
                 Product::fromLine);
@@ -28,6 +30,13 @@ public class ProductsListTest {
 
     }
 
+    /**
+     * creates the implementation of the ordered list under test, so other implementations can run the same tests
+     */
+    protected OrderedList<Product> newProductsList(Comparator<Product> ordening) {
+        return new OrderedArrayList<>(ordening);
+    }
+
     @Test
     public void importItemsLoadsAllProductsUnsorted() {
         assertEquals(12, products.size());
@@ -94,4 +103,19 @@ public class ProductsListTest {
             assertEquals(index, products.indexOf(products.get(index)));
         }
     }
+
+    @Test
+    public void mergeAllMergesAndSortsInOnePass() {
+        Product product2b = new Product(product2.getBarcode(), "", 1.00);
+        assertTrue(products.mergeAll(List.of(product3b, product2b, product3a, product2a),
+                (p1,p2) -> { p2.setPrice(p1.getPrice() + p2.getPrice()); return p2;} ));
+
+        assertEquals(14, products.size());
+        assertEquals(34.14 + 1.00 + 1.00 + 2.50, products.aggregate(Product::getPrice), 0.000001);
+        for (int index = 0; index < products.size(); index++) {
+            assertEquals(index, products.indexOfByBinarySearch(products.get(index)));
+            if (index > 0) assertTrue(products.get(index - 1).getBarcode() < products.get(index).getBarcode());
+        }
+        assertSame(product2, products.get(products.indexOf(product2b)));
+    }
 }
@@ -41,4 +41,17 @@ public class PurchaseTest {
         Purchase purchase1 = Purchase.fromLine("111111111111111, 10", products);
         assertEquals("111111111111111/Stroopwafels 10st/10/12.30", purchase1.toString());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void canConvertATextLineWithABarcodeIndex() {
+        BarcodeIndex index = new BarcodeIndex(products);
+        assertEquals(3, index.size());
+        assertNull(index.get(444444444444444L));
+
+        Purchase purchase = Purchase.fromLine("222222222222222, 20", index);
+        assertSame(marsbar, purchase.getProduct());
+        assertEquals(20, purchase.getCount());
+        assertNull(Purchase.fromLine("444444444444444, 20", index));
+        assertNull(Purchase.fromLine("222222222222222", index));
+    }
+}
@@ -3,6 +3,8 @@ package models;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.concurrent.ForkJoinPool;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class PurchaseTrackerTest {
@@ -26,4 +28,16 @@ public class PurchaseTrackerTest {
         assertEquals(61, purchaseTracker.getPurchases().size());
         assertEquals(16730, purchaseTracker.getPurchases().stream().mapToInt(Purchase::getCount).sum());
     }
+
+    @Test
+    public void parallelImportMatchesSequentialImport() {
+        String sequentialPurchases = purchaseTracker.getPurchases().toString();
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        purchaseTracker.importPurchasesFromVault("/purchases", pool);
+        pool.shutdown();
+
+        assertEquals(61, purchaseTracker.getPurchases().size());
+        assertEquals(sequentialPurchases, purchaseTracker.getPurchases().toString());
+    }
 }
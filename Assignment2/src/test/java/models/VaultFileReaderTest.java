@@ -0,0 +1,109 @@
+package models;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VaultFileReaderTest {
+
+    @TempDir
+    Path directory;
+
+    List<Product> products;
+    BarcodeIndex index;
+
+    @BeforeEach
+    private void setup() {
+        products = new ArrayList<>();
+        VaultFileReader.importProductsFromFile(products, VaultFileReaderTest.class.getResource("/products.txt").getPath());
+        index = new BarcodeIndex(products);
+    }
+
+    private static List<String> linesOf(String resourceName) throws IOException {
+        return Files.readAllLines(Path.of(VaultFileReaderTest.class.getResource(resourceName).getPath()), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void productsMatchTheLineParser() throws IOException {
+        for (String resourceName : new String[]{"/products.txt", "/products12.txt"}) {
+            List<Product> expected = linesOf(resourceName).stream().map(Product::fromLine).filter(Objects::nonNull).collect(Collectors.toList());
+            List<Product> read = new ArrayList<>();
+            VaultFileReader.importProductsFromFile(read, VaultFileReaderTest.class.getResource(resourceName).getPath());
+
+            assertEquals(expected.toString(), read.toString());
+            for (int i = 0; i < expected.size(); i++) assertEquals(expected.get(i).getPrice(), read.get(i).getPrice());
+        }
+    }
+
+    @Test
+    public void purchasesMatchTheLineParser() throws IOException {
+        String resourceName = "/purchases/20211001/Amsterdam/vijzelstraat.txt";
+        List<Purchase> expected = linesOf(resourceName).stream()
+                .map(line -> Purchase.fromLine(line, products))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        List<Purchase> read = new ArrayList<>();
+        VaultFileReader.importPurchasesFromFile(read, VaultFileReaderTest.class.getResource(resourceName).getPath(), index);
+
+        assertEquals(expected.toString(), read.toString());
+    }
+
+    @Test
+    public void corruptLinesAreSkipped() throws IOException {
+        Path file = directory.resolve("corrupt.txt");
+        Files.writeString(file, "8712100516382, 10\r\n\n8712100516382\n999, 5\n8712100516382, x\n8712100516381, -3\n8712100516382, 1, 2\n8718907136068, 7");
+
+        List<Purchase> read = new ArrayList<>();
+        VaultFileReader.importPurchasesFromFile(read, file.toString(), index);
+
+        assertEquals(List.of(8712100516382L, 8712100516381L, 8718907136068L),
+                read.stream().map(Purchase::getBarcode).collect(Collectors.toList()));
+        assertEquals(List.of(10, -3, 7), read.stream().map(Purchase::getCount).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void PERFORMANCE_readALargeBranchFileAsBytesAndAsLines() throws IOException {
+        // A large branch file, with every line in the format of the vault.
+        // Only prints the speed of both readers, which depends on the machine, and checks that they read the same purchases.
+        Random random = new Random(23);
+        StringBuilder content = new StringBuilder();
+        for (int line = 0; line < 500_000; line++) {
+            content.append(products.get(random.nextInt(products.size())).getBarcode()).append(", ").append(1 + random.nextInt(100)).append('\n');
+        }
+        Path file = directory.resolve("branch.txt");
+        Files.writeString(file, content);
+        double megabytes = Files.size(file) / 1e6;
+
+        long scannedCount = 0, readCount = 0;
+        for (int run = 0; run < 3; run++) {
+            List<Purchase> scanned = new ArrayList<>();
+            long start = System.nanoTime();
+            PurchaseTracker.importItemsFromFile(scanned, file.toString(), line -> Purchase.fromLine(line, products));
+            long scanning = System.nanoTime() - start;
+
+            List<Purchase> read = new ArrayList<>();
+            start = System.nanoTime();
+            VaultFileReader.importPurchasesFromFile(read, file.toString(), index);
+            long reading = System.nanoTime() - start;
+
+            System.out.printf("Scanner: %.1f MB/s, VaultFileReader: %.1f MB/s%n",
+                    megabytes * 1e9 / scanning, megabytes * 1e9 / reading);
+            scannedCount = scanned.stream().mapToLong(Purchase::getCount).sum();
+            readCount = read.stream().mapToLong(Purchase::getCount).sum();
+        }
+
+        assertEquals(scannedCount, readCount);
+    }
+}